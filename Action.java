@@ -0,0 +1,11 @@
+// An enum used for modeling the actions that can be applied to the active
+// tetromino during a single tick of the game
+public enum Action {
+   NONE, // no user interaction in this tick
+   LEFT, // move the active tetromino left by one
+   RIGHT, // move the active tetromino right by one
+   DOWN, // move the active tetromino down by one
+   ROTATE_CLOCKWISE, // rotate the active tetromino clockwise
+   ROTATE_COUNTERCLOCKWISE, // rotate the active tetromino counterclockwise
+   HARD_DROP // drop the active tetromino to where it lands and lock it there
+}
@@ -0,0 +1,336 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+// A class used for modeling a bot that plays the game by deciding where to place
+// each tetromino. Every rotation and column of the current tetromino is tried
+// on a copy of the game grid (including the cleared rows and the merges), and
+// the resulting grids are scored. With the lookahead, the best grids (the beam)
+// are also tried with every placement of the next tetromino. The placements are
+// tried in parallel on a ForkJoinPool, so the bot gets faster with more cores
+// (or one after another without a pool, e.g., when many games run in parallel).
+public class AutoPlayer implements PlacementPolicy {
+   // Data fields: class variables
+   // --------------------------------------------------------------------------
+   // the weights of the features used for scoring a game grid
+   private static final double SCORE_WEIGHT = 1; // for the gained score
+   private static final double HOLE_WEIGHT = -20; // for each empty cell under a tile
+   private static final double HEIGHT_WEIGHT = -2; // for the sum of column heights
+   private static final double BUMPINESS_WEIGHT = -2; // for height differences
+   private static final double MAX_HEIGHT_WEIGHT = -5; // for the highest column
+   // the value of a placement that ends the game (or is not possible)
+   private static final double GAME_OVER_VALUE = -1e18;
+
+   // Data fields: instance variables
+   // --------------------------------------------------------------------------
+   private int beamWidth; // the number of the best placements kept for lookahead
+   private boolean lookahead; // whether the next tetromino is also tried
+   // used for trying the placements in parallel (null for trying them in the
+   // calling thread)
+   private ForkJoinPool pool;
+   // the placements of the current tetromino that are tried, their values,
+   // the game grids after them and the tetrominoes placed on them (reused for
+   // each decision)
+   private int candidateCount;
+   private int[] candidateRotations, candidateCols;
+   private double[] candidateValues;
+   private GameGrid[] candidateGrids;
+   private Tetromino[] candidateTetrominoes;
+   // the indexes of the candidates in the beam, their values after the next
+   // tetromino and the game grids and the tetrominoes used for trying the next
+   // tetromino
+   private int[] beam;
+   private double[] beamValues;
+   private GameGrid[] beamGrids;
+   private Tetromino[] beamTetrominoes;
+   // the row masks of the rotations of the current tetromino that are tried
+   private long[][] triedMasks = new long[4][];
+   // the number of decisions made and the total time spent for them
+   private long decisionCount, decisionNanos;
+
+   // Methods
+   // --------------------------------------------------------------------------
+   // A constructor for creating a bot with the given beam width and lookahead
+   // that tries the placements on the given pool
+   public AutoPlayer(int beamWidth, boolean lookahead, ForkJoinPool pool) {
+      this.beamWidth = Math.max(1, beamWidth);
+      this.lookahead = lookahead;
+      this.pool = pool;
+   }
+
+   // A class used for modeling a placement of a tetromino (its rotation and the
+   // column of its bottom left cell)
+   public static class Placement {
+      private final int rotation, col;
+
+      public Placement(int rotation, int col) {
+         this.rotation = rotation;
+         this.col = col;
+      }
+
+      public int getRotation() {
+         return rotation;
+      }
+
+      public int getCol() {
+         return col;
+      }
+   }
+
+   // A method that decides where to place the current tetromino of the given
+   // game and puts it there (in its current row) by using GameEngine.place
+   public Placement play(GameEngine engine) {
+      Placement placement = decide(engine);
+      engine.place(placement.getRotation(), placement.getCol());
+      return placement;
+   }
+
+   // A method that places the current tetromino of the given game as a policy
+   // of the batch simulator (the bot does not use the random number generator)
+   @Override
+   public void placeTetromino(GameEngine engine, GameRandom random) {
+      play(engine);
+   }
+
+   // A method that returns the best placement of the current tetromino of the
+   // given game
+   public Placement decide(GameEngine engine) {
+      long startTime = System.nanoTime();
+      GameGrid grid = engine.getGrid();
+      Tetromino current = engine.getCurrentTetromino();
+      Tetromino next = engine.getNextTetromino();
+      long rootScore = grid.getScore();
+      // try every placement of the current tetromino in parallel
+      findPlacements(current, grid);
+      forEach(candidateCount, i -> candidateValues[i] =
+            placeAndEvaluate(grid, current, candidateRotations[i], candidateCols[i],
+                  candidateGrids[i], candidateTetrominoes[i], rootScore));
+      // the best placement without the lookahead
+      int best = 0;
+      for (int i = 1; i < candidateCount; i++)
+         if (candidateValues[i] > candidateValues[best])
+            best = i;
+      // try every placement of the next tetromino on the grids in the beam
+      int beamSize = lookahead && next != null ? fillBeam() : 0;
+      if (beamSize > 0) {
+         forEach(beamSize, b -> beamValues[b] =
+               bestValue(candidateGrids[beam[b]], next, beamGrids[b], beamTetrominoes[b],
+                     rootScore));
+         int bestInBeam = 0;
+         for (int b = 1; b < beamSize; b++)
+            if (beamValues[b] > beamValues[bestInBeam])
+               bestInBeam = b;
+         best = beam[bestInBeam];
+      }
+      decisionCount++;
+      decisionNanos += System.nanoTime() - startTime;
+      return new Placement(candidateRotations[best], candidateCols[best]);
+   }
+
+   // A method that stores every rotation and column of the given tetromino as
+   // the candidates to try (rotations with the same shape are tried once)
+   private void findPlacements(Tetromino tetromino, GameGrid grid) {
+      int gridWidth = grid.getGridWidth(), maxCount = 4 * gridWidth;
+      if (candidateRotations == null || candidateRotations.length < maxCount
+            || candidateGrids[0].getGridWidth() != gridWidth
+            || candidateGrids[0].getGridHeight() != grid.getGridHeight()) {
+         candidateRotations = new int[maxCount];
+         candidateCols = new int[maxCount];
+         candidateValues = new double[maxCount];
+         candidateGrids = new GameGrid[maxCount];
+         candidateTetrominoes = new Tetromino[maxCount];
+         for (int i = 0; i < maxCount; i++) {
+            candidateGrids[i] = new GameGrid(grid.getGridHeight(), gridWidth);
+            candidateTetrominoes[i] = new Tetromino(tetromino);
+         }
+         beam = new int[beamWidth];
+         beamValues = new double[beamWidth];
+         beamGrids = new GameGrid[beamWidth];
+         beamTetrominoes = new Tetromino[beamWidth];
+         for (int b = 0; b < beamWidth; b++) {
+            beamGrids[b] = new GameGrid(grid.getGridHeight(), gridWidth);
+            beamTetrominoes[b] = new Tetromino(tetromino);
+         }
+      }
+      candidateCount = 0;
+      for (int rotation = 0; rotation < 4; rotation++) {
+         triedMasks[rotation] = tetromino.getRowMasks(rotation);
+         boolean isTried = false;
+         for (int r = 0; r < rotation; r++)
+            isTried |= Arrays.equals(triedMasks[r], triedMasks[rotation]);
+         if (isTried)
+            continue;
+         // the columns of the leftmost and the rightmost cells in the rotation
+         long columns = 0;
+         for (long mask : triedMasks[rotation])
+            columns |= mask;
+         int minCol = Long.numberOfTrailingZeros(columns);
+         int maxCol = 63 - Long.numberOfLeadingZeros(columns);
+         for (int col = -minCol; col + maxCol < gridWidth; col++) {
+            candidateRotations[candidateCount] = rotation;
+            candidateCols[candidateCount] = col;
+            candidateCount++;
+         }
+      }
+   }
+
+   // A method that puts the indexes of the best candidates (that do not end the
+   // game) into the beam and returns the number of them
+   private int fillBeam() {
+      int beamSize = 0;
+      for (int i = 0; i < candidateCount; i++) {
+         if (candidateValues[i] <= GAME_OVER_VALUE)
+            continue;
+         // insert the candidate into the beam sorted by the values
+         int position = beamSize;
+         while (position > 0 && candidateValues[beam[position - 1]] < candidateValues[i])
+            position--;
+         if (position == beamWidth)
+            continue;
+         int last = Math.min(beamSize, beamWidth - 1);
+         for (int b = last; b > position; b--)
+            beam[b] = beam[b - 1];
+         beam[position] = i;
+         beamSize = Math.min(beamSize + 1, beamWidth);
+      }
+      return beamSize;
+   }
+
+   // A method that returns the value of the best placement of the given
+   // tetromino on the given game grid (by using the given scratch grid and
+   // scratch tetromino)
+   private double bestValue(GameGrid grid, Tetromino tetromino, GameGrid scratch,
+         Tetromino scratchTetromino, long rootScore) {
+      double best = GAME_OVER_VALUE;
+      for (int rotation = 0; rotation < 4; rotation++) {
+         long columns = 0;
+         for (long mask : tetromino.getRowMasks(rotation))
+            columns |= mask;
+         int minCol = Long.numberOfTrailingZeros(columns);
+         int maxCol = 63 - Long.numberOfLeadingZeros(columns);
+         for (int col = -minCol; col + maxCol < grid.getGridWidth(); col++)
+            best = Math.max(best, placeAndEvaluate(grid, tetromino, rotation, col,
+                  scratch, scratchTetromino, rootScore));
+      }
+      return best;
+   }
+
+   // A method that places a copy of the given tetromino (made in the placed
+   // tetromino) with the given rotation and column on the target grid (a copy
+   // of the given grid) by a hard drop and returns the value of the resulting
+   // grid
+   private double placeAndEvaluate(GameGrid grid, Tetromino tetromino, int rotation,
+         int col, GameGrid target, Tetromino placed, long rootScore) {
+      target.copyFrom(grid);
+      placed.copyFrom(tetromino);
+      if (!placed.setPlacement(rotation, col, target))
+         return GAME_OVER_VALUE;
+      placed.move(Direction.HARD_DROP, target);
+      if (target.updateGrid(placed))
+         return GAME_OVER_VALUE;
+      return evaluate(target, rootScore);
+   }
+
+   // A method that scores the given game grid by the score gained since the
+   // decision started and by the shape of its skyline
+   private static double evaluate(GameGrid grid, long rootScore) {
+      int aggregateHeight = 0, bumpiness = 0, maxHeight = 0;
+      for (int col = 0; col < grid.getGridWidth(); col++) {
+         int height = grid.getColumnHeight(col);
+         aggregateHeight += height;
+         maxHeight = Math.max(maxHeight, height);
+         if (col > 0)
+            bumpiness += Math.abs(height - grid.getColumnHeight(col - 1));
+      }
+      // the empty cells under the topmost tile of each column
+      int holes = aggregateHeight - grid.getTileCount();
+      return SCORE_WEIGHT * (grid.getScore() - rootScore) + HOLE_WEIGHT * holes
+            + HEIGHT_WEIGHT * aggregateHeight + BUMPINESS_WEIGHT * bumpiness
+            + MAX_HEIGHT_WEIGHT * maxHeight;
+   }
+
+   // A method that runs the given action for each index from 0 to count - 1 on
+   // the pool (or in the calling thread when there is no pool)
+   private void forEach(int count, IntConsumer action) {
+      if (pool == null) {
+         for (int i = 0; i < count; i++)
+            action.accept(i);
+      } else
+         pool.invoke(new ForEachTask(0, count, action));
+   }
+
+   // A class used for running the given action for each index in a range by
+   // splitting the range into halves as the tasks of the ForkJoinPool
+   private static class ForEachTask extends RecursiveAction {
+      private static final long serialVersionUID = 1L;
+      private final int from, to;
+      private final IntConsumer action;
+
+      ForEachTask(int from, int to, IntConsumer action) {
+         this.from = from;
+         this.to = to;
+         this.action = action;
+      }
+
+      @Override
+      protected void compute() {
+         if (to - from <= 1) {
+            if (to > from)
+               action.accept(from);
+            return;
+         }
+         int middle = (from + to) >>> 1;
+         invokeAll(new ForEachTask(from, middle, action), new ForEachTask(middle, to, action));
+      }
+   }
+
+   // Getter methods for the number of decisions and the decisions per second
+   // --------------------------------------------------------------------------
+   public long getDecisionCount() {
+      return decisionCount;
+   }
+
+   public double getDecisionsPerSecond() {
+      return decisionNanos == 0 ? 0 : decisionCount * 1e9 / decisionNanos;
+   }
+
+   // A method that plays the given game headless until it is over or the given
+   // number of tetrominoes have been placed, and returns the number of them
+   public int playGame(GameEngine engine, int maxTetrominoes) {
+      int placed = 0;
+      while (!engine.isGameOver() && placed < maxTetrominoes) {
+         play(engine);
+         engine.step(Action.HARD_DROP);
+         placed++;
+      }
+      return placed;
+   }
+
+   // The main method for measuring the bot without a display. The arguments are
+   // the number of games, the beam width, the lookahead (0 or 1), the number of
+   // threads and the maximum number of tetrominoes for each game.
+   public static void main(String[] args) {
+      int games = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+      int beamWidth = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+      boolean lookahead = args.length > 2 ? Integer.parseInt(args[2]) != 0 : true;
+      int threads = args.length > 3 ? Integer.parseInt(args[3])
+            : Runtime.getRuntime().availableProcessors();
+      int maxTetrominoes = args.length > 4 ? Integer.parseInt(args[4]) : 1000;
+      ForkJoinPool pool = new ForkJoinPool(threads);
+      AutoPlayer player = new AutoPlayer(beamWidth, lookahead, pool);
+      long totalScore = 0, totalTetrominoes = 0;
+      for (int game = 0; game < games; game++) {
+         GameEngine engine = new GameEngine(12, 8, new GameRandom(game));
+         totalTetrominoes += player.playGame(engine, maxTetrominoes);
+         totalScore += engine.getScore();
+      }
+      pool.shutdown();
+      System.out.printf("games=%d threads=%d beam=%d lookahead=%b%n", games, threads,
+            beamWidth, lookahead);
+      System.out.printf("average score=%.1f average tetrominoes=%.1f%n",
+            (double) totalScore / games, (double) totalTetrominoes / games);
+      System.out.printf("decisions=%d decisions/s=%.1f%n", player.getDecisionCount(),
+            player.getDecisionsPerSecond());
+   }
+}
@@ -0,0 +1,224 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+// A class used for playing many games without a display in parallel (e.g., for
+// comparing the rules or the bots over millions of games). Each game is played
+// with its own seed by a placement policy that decides where to drop each
+// tetromino. The results of the games are written to a CSV file (or to a binary
+// file) as the games end, and their distributions are printed at the end.
+//
+// The games are shared among the threads in chunks taken from an atomic
+// counter, and each thread keeps its own histograms that are added up at the
+// end, so the threads do not wait for each other except for writing a chunk of
+// results to the file.
+public class BatchSimulator {
+   // Data fields: class variables
+   // --------------------------------------------------------------------------
+   // the number of games taken by a thread at a time
+   private static final int CHUNK_SIZE = 64;
+   // the columns of the CSV file (and the fields of each binary record)
+   private static final String CSV_HEADER =
+         "seed,score,clearedRows,merges,maxTile,tetrominoes,ticks";
+
+   // Data fields: instance variables
+   // --------------------------------------------------------------------------
+   private int gridHeight, gridWidth; // the size of the game grid
+   private String policyName; // the name of the placement policy
+   private long firstSeed; // the seed of the first game (the others follow it)
+   private int maxTetrominoes; // the number of tetrominoes after which a game ends
+   private boolean useBag; // whether the types are taken from a 7-bag generator
+   // the distributions of the results of the games
+   private Histogram scores = new Histogram(), clearedRows = new Histogram();
+   private Histogram merges = new Histogram(), maxTiles = new Histogram();
+   private Histogram tetrominoes = new Histogram();
+
+   // Methods
+   // --------------------------------------------------------------------------
+   // A constructor for creating a simulator for the games with the given grid
+   // size, policy, first seed and the maximum number of tetrominoes per game
+   public BatchSimulator(int gridH, int gridW, String policyName, long firstSeed,
+         int maxTetrominoes) {
+      gridHeight = gridH;
+      gridWidth = gridW;
+      this.policyName = policyName;
+      this.firstSeed = firstSeed;
+      this.maxTetrominoes = maxTetrominoes;
+      // check the name of the policy before starting the games
+      PlacementPolicy.create(policyName);
+   }
+
+   // A setter method for whether the types of the tetrominoes are taken from a
+   // 7-bag generator (instead of being chosen independently)
+   public void setUseBag(boolean useBag) {
+      this.useBag = useBag;
+   }
+
+   // A method that plays the given number of games on the given number of
+   // threads and writes their results to the given output (null for none) as
+   // CSV lines or as binary records
+   public void run(long games, int threads, OutputStream output, boolean binary)
+         throws IOException, InterruptedException {
+      // the results of the games are written by the threads in chunks
+      DataOutputStream out = output == null ? null
+            : new DataOutputStream(new BufferedOutputStream(output, 1 << 16));
+      if (out != null && !binary)
+         out.write((CSV_HEADER + "\n").getBytes(StandardCharsets.US_ASCII));
+      AtomicLong nextGame = new AtomicLong();
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      List<Future<Worker>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++)
+         futures.add(executor.submit(() -> {
+            Worker worker = new Worker(out, binary);
+            worker.playGames(nextGame, games);
+            return worker;
+         }));
+      executor.shutdown();
+      try {
+         // add up the histograms of the threads
+         for (Future<Worker> future : futures) {
+            Worker worker = future.get();
+            scores.add(worker.scores);
+            clearedRows.add(worker.clearedRows);
+            merges.add(worker.merges);
+            maxTiles.add(worker.maxTiles);
+            tetrominoes.add(worker.tetrominoes);
+         }
+      } catch (ExecutionException e) {
+         throw new IOException("A simulated game has failed", e.getCause());
+      }
+      if (out != null)
+         out.flush();
+   }
+
+   // A class used for playing the games on a single thread and keeping their
+   // results
+   private class Worker {
+      private PlacementPolicy policy = PlacementPolicy.create(policyName);
+      private Histogram scores = new Histogram(), clearedRows = new Histogram();
+      private Histogram merges = new Histogram(), maxTiles = new Histogram();
+      private Histogram tetrominoes = new Histogram();
+      // the results of the games in the current chunk (written at once)
+      private DataOutputStream out;
+      private boolean binary;
+      private ByteArrayOutputStream chunkBytes = new ByteArrayOutputStream();
+      private DataOutputStream chunk = new DataOutputStream(chunkBytes);
+
+      Worker(DataOutputStream out, boolean binary) {
+         this.out = out;
+         this.binary = binary;
+      }
+
+      // A method that plays the chunks of games taken from the given counter
+      // until the given number of games have been taken
+      void playGames(AtomicLong nextGame, long games) throws IOException {
+         while (true) {
+            long first = nextGame.getAndAdd(CHUNK_SIZE);
+            if (first >= games)
+               return;
+            long last = Math.min(games, first + CHUNK_SIZE);
+            for (long game = first; game < last; game++)
+               playGame(firstSeed + game);
+            if (out != null) {
+               synchronized (out) {
+                  chunkBytes.writeTo(out);
+               }
+               chunkBytes.reset();
+            }
+         }
+      }
+
+      // A method that plays the game with the given seed and records its results
+      private void playGame(long seed) throws IOException {
+         GameEngine engine = new GameEngine(gridHeight, gridWidth, new GameRandom(seed),
+               useBag);
+         // the policy draws from a stream of its own (split from a generator
+         // with the same seed), so the game gives the same tetrominoes for a
+         // seed whatever policy plays it
+         GameRandom policyRandom = new GameRandom(seed).split();
+         while (!engine.isGameOver() && engine.getLockedTetrominoCount() < maxTetrominoes) {
+            policy.placeTetromino(engine, policyRandom);
+            engine.step(Action.HARD_DROP);
+         }
+         GameGrid grid = engine.getGrid();
+         long maxTile = Tile.valueOf(grid.getMaxExponent());
+         scores.record(grid.getScore());
+         clearedRows.record(grid.getClearedRowCount());
+         merges.record(grid.getMergeCount());
+         maxTiles.record(maxTile);
+         tetrominoes.record(engine.getLockedTetrominoCount());
+         if (out == null)
+            return;
+         if (binary) {
+            chunk.writeLong(seed);
+            chunk.writeLong(grid.getScore());
+            chunk.writeInt(grid.getClearedRowCount());
+            chunk.writeInt(grid.getMergeCount());
+            chunk.writeLong(maxTile);
+            chunk.writeInt(engine.getLockedTetrominoCount());
+            chunk.writeLong(engine.getTickCount());
+         } else {
+            String line = seed + "," + grid.getScore() + "," + grid.getClearedRowCount()
+                  + "," + grid.getMergeCount() + "," + maxTile + ","
+                  + engine.getLockedTetrominoCount() + "," + engine.getTickCount() + "\n";
+            chunk.write(line.getBytes(StandardCharsets.US_ASCII));
+         }
+      }
+   }
+
+   // A method for printing the distributions of the results of the games
+   public void printReport(PrintStream out) {
+      scores.print(out, "score", 20);
+      clearedRows.print(out, "cleared rows", 10);
+      merges.print(out, "merges", 10);
+      maxTiles.print(out, "max tile", 10);
+      tetrominoes.print(out, "tetrominoes", 10);
+   }
+
+   // The main method for running the simulator from the command line. The
+   // arguments are the number of games, the policy (random, greedy or bot), the
+   // number of threads, the first seed, the output file (ending with .csv for a
+   // CSV file and anything else for a binary file, or - for none), the
+   // maximum number of tetrominoes for each game and the generator of the
+   // types of the tetrominoes (uniform or bag).
+   //
+   // Each game is played with a GameRandom seeded with its seed (the seed
+   // column of the results), so any game can be played again on its own, and
+   // the policy uses a generator split from one with the same seed.
+   public static void main(String[] args) throws IOException, InterruptedException {
+      long games = args.length > 0 ? Long.parseLong(args[0]) : 10_000;
+      String policy = args.length > 1 ? args[1] : "greedy";
+      int threads = args.length > 2 ? Integer.parseInt(args[2])
+            : Runtime.getRuntime().availableProcessors();
+      long seed = args.length > 3 ? Long.parseLong(args[3]) : 0;
+      String file = args.length > 4 ? args[4] : "-";
+      int maxTetrominoes = args.length > 5 ? Integer.parseInt(args[5]) : 1000;
+      boolean useBag = args.length > 6 && args[6].equalsIgnoreCase("bag");
+      BatchSimulator simulator = new BatchSimulator(12, 8, policy, seed, maxTetrominoes);
+      simulator.setUseBag(useBag);
+      OutputStream output = file.equals("-") ? null : new FileOutputStream(file);
+      long startTime = System.nanoTime();
+      try {
+         simulator.run(games, threads, output, !file.endsWith(".csv"));
+      } finally {
+         if (output != null)
+            output.close();
+      }
+      double seconds = (System.nanoTime() - startTime) / 1e9;
+      System.out.printf("%d games (%s policy) on %d threads in %.2f s (%.0f games/s)%n",
+            games, policy, threads, seconds, games / seconds);
+      simulator.printReport(System.out);
+   }
+}
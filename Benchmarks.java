@@ -0,0 +1,334 @@
+import java.awt.event.KeyEvent;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+// A class used for measuring the time and the memory allocated by the game rules
+// (locking, clearing rows, merging, deleting floating tiles, moving and rotating
+// the tetrominoes and full game ticks) on game grids of different sizes and
+// fill densities, as a baseline for comparing the performance changes.
+//
+// Each operation is first run for a while so that the JIT compiler optimizes
+// it (warm-up), and then it is run in batches of a fixed duration. The fastest
+// batch gives the time per operation, and the bytes allocated by the thread
+// during all the batches (read from the ThreadMXBean of the JVM) give the bytes
+// allocated per operation. The operations that change the game grid first copy
+// the prepared game grid, so the time of GameGrid.copyFrom is included in them
+// (and it is also measured on its own).
+//
+// With the "alloc" argument, it checks instead that playing the game (the
+// ticks with moves, rotations, locking and new games, taking the snapshots for
+// drawing and reading the keys) allocates no memory once it is warmed up, and
+// exits with status 1 if any of them does (an allocation regression test, as
+// the garbage collection pauses show up as stutters while playing).
+public class Benchmarks {
+   // Data fields: class variables
+   // --------------------------------------------------------------------------
+   // the sizes (height x width) of the game grids and the fill densities
+   private static final int[][] GRID_SIZES = { { 12, 8 }, { 20, 10 }, { 40, 20 } };
+   private static final double[] DENSITIES = { 0.25, 0.5, 0.75 };
+   // the part of the rows from the bottom that are filled (the rows above are
+   // left empty for the tetrominoes)
+   private static final double FILLED_ROWS = 0.7;
+   // the number of tetrominoes put inside the filled rows for measuring the
+   // collision tests against the locked tiles
+   private static final int PROBE_COUNT = 64;
+   // the durations of the warm-up and of each measured batch
+   private static long warmupNanos = 300_000_000L, batchNanos = 50_000_000L;
+   private static final int BATCH_COUNT = 5;
+   // the number of times each operation is run before and while checking its
+   // allocations, and the bytes it may allocate in all of them (the JVM itself
+   // may allocate a few kilobytes on the thread while compiling, while an
+   // object created in each tick, lock or new game adds up to far more)
+   private static final long ALLOCATION_WARMUP_COUNT = 1_000_000;
+   private static final long ALLOCATION_CHECK_COUNT = 1_000_000;
+   private static final long ALLOCATION_SLACK_BYTES = 16 * 1024;
+   // used for reading the bytes allocated by the current thread
+   private static final com.sun.management.ThreadMXBean THREAD_BEAN =
+         (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+   // the results of the operations are added up here, so that the JIT compiler
+   // cannot remove the operations as unused code
+   private static volatile long sink;
+
+   // An interface used for modeling an operation to measure (it returns any
+   // value computed by the operation)
+   interface Operation {
+      long run();
+   }
+
+   // A class used for modeling the result of measuring an operation
+   static class Result {
+      final double nanosPerOperation, bytesPerOperation;
+
+      Result(double nanosPerOperation, double bytesPerOperation) {
+         this.nanosPerOperation = nanosPerOperation;
+         this.bytesPerOperation = bytesPerOperation;
+      }
+   }
+
+   // A method that measures the given operation
+   static Result measure(Operation operation) {
+      long result = 0;
+      // warm up and find the number of operations that takes about batchNanos
+      long operations = 0, startTime = System.nanoTime();
+      while (System.nanoTime() - startTime < warmupNanos) {
+         result += operation.run();
+         operations++;
+      }
+      long batchSize = Math.max(1, operations * batchNanos / warmupNanos);
+      // run the batches and keep the fastest one
+      double bestNanos = Double.MAX_VALUE;
+      long threadId = Thread.currentThread().getId();
+      long allocatedBefore = THREAD_BEAN.getThreadAllocatedBytes(threadId);
+      for (int batch = 0; batch < BATCH_COUNT; batch++) {
+         long batchStart = System.nanoTime();
+         for (long i = 0; i < batchSize; i++)
+            result += operation.run();
+         bestNanos = Math.min(bestNanos, (double) (System.nanoTime() - batchStart) / batchSize);
+      }
+      long allocated = THREAD_BEAN.getThreadAllocatedBytes(threadId) - allocatedBefore;
+      sink += result;
+      return new Result(bestNanos, (double) allocated / (batchSize * BATCH_COUNT));
+   }
+
+   // A method that returns the bytes allocated by the current thread while
+   // running the given operation the given number of times (after running it
+   // ALLOCATION_WARMUP_COUNT times for the warm-up)
+   static long measureAllocatedBytes(Operation operation, long count) {
+      long result = 0;
+      for (long i = 0; i < ALLOCATION_WARMUP_COUNT; i++)
+         result += operation.run();
+      long threadId = Thread.currentThread().getId();
+      long allocatedBefore = THREAD_BEAN.getThreadAllocatedBytes(threadId);
+      for (long i = 0; i < count; i++)
+         result += operation.run();
+      long allocated = THREAD_BEAN.getThreadAllocatedBytes(threadId) - allocatedBefore;
+      sink += result;
+      return allocated;
+   }
+
+   // A method that creates a game grid of the given size where each cell of
+   // the bottom rows has a tile with the given probability (the numbers on the
+   // tiles are from 2 to 32, so some of them can merge)
+   static GameGrid createGrid(int gridH, int gridW, double density, long seed) {
+      GameRandom random = new GameRandom(seed);
+      int filledRows = (int) (gridH * FILLED_ROWS);
+      // the state of a game grid in the format read by GameGrid.readFrom
+      ByteBuffer state = ByteBuffer.allocate(gridH * gridW + 32);
+      for (int row = 0; row < gridH; row++)
+         for (int col = 0; col < gridW; col++)
+            state.put((byte) (row < filledRows && random.nextInt(1000) < density * 1000
+                  ? 1 + random.nextInt(5) : 0));
+      state.putLong(0); // score
+      state.putInt(0); // cleared rows
+      state.putInt(0); // merges
+      state.put((byte) 5); // the largest exponent
+      state.put((byte) 0); // not game over
+      state.flip();
+      GameGrid grid = new GameGrid(gridH, gridW);
+      grid.readFrom(state);
+      return grid;
+   }
+
+   // A method that creates tetrominoes of random types at random positions
+   // inside the filled rows of the given game grid where they do not collide
+   // with the locked tiles (or where they land from the top when no such
+   // position is found), so their moves and rotations test their cells
+   // against the occupied rows
+   private static Tetromino[] createProbes(GameGrid grid, long seed) {
+      GameRandom random = new GameRandom(seed);
+      int gridH = grid.getGridHeight(), gridW = grid.getGridWidth();
+      int filledRows = (int) (gridH * FILLED_ROWS);
+      Tetromino[] probes = new Tetromino[PROBE_COUNT];
+      for (int i = 0; i < PROBE_COUNT; i++) {
+         char type = Tetromino.TYPES[random.nextInt(Tetromino.TYPES.length)];
+         Tetromino probe = new Tetromino(type, random, gridH, gridW);
+         boolean placed = false;
+         for (int attempt = 0; attempt < 1000 && !placed; attempt++) {
+            int rotation = random.nextInt(4), col = random.nextInt(gridW);
+            int row = random.nextInt(filledRows);
+            if (!grid.collides(probe.getRowMasks(rotation), probe.getSize(), row, col)) {
+               probe.getBottomLeftCell().setY(row);
+               placed = probe.setPlacement(rotation, col, grid);
+            }
+         }
+         if (!placed) {
+            probe.setPlacement(random.nextInt(4), random.nextInt(gridW), grid);
+            probe.move(Direction.HARD_DROP, grid);
+         }
+         probes[i] = probe;
+      }
+      return probes;
+   }
+
+   // A method for printing a line of the results table
+   private static void print(String name, String size, String density, Result result) {
+      System.out.printf("%-36s %7s %7s %12.1f %12.1f%n", name, size, density,
+            result.nanosPerOperation, result.bytesPerOperation);
+   }
+
+   // A method that measures the operations on the game grids of the given size
+   // and fill density and prints the results whose names contain the filter
+   static void runGridBenchmarks(int gridH, int gridW, double density, String filter) {
+      GameGrid board = createGrid(gridH, gridW, density, 42);
+      GameGrid scratch = new GameGrid(gridH, gridW);
+      // tetrominoes inside the filled rows (used one after another, so the
+      // results do not depend on a single position) and a tetromino landed on
+      // the prepared game grid
+      Tetromino[] probes = createProbes(board, 7);
+      int[] probeIndex = new int[1];
+      Tetromino landed = new Tetromino('T', new GameRandom(7), gridH, gridW);
+      landed.move(Direction.HARD_DROP, board);
+      landed.createMinBoundedTileMatrix();
+      Tile[][] landedTiles = landed.getMinBoundedTileMatrix();
+      Point landedPosition = landed.getMinBoundedTileMatrixPosition();
+      String size = gridH + "x" + gridW, fill = String.valueOf(density);
+      Object[][] operations = {
+            { "GameGrid.copyFrom", (Operation) () -> {
+               scratch.copyFrom(board);
+               return scratch.getScore();
+            } },
+            { "GameGrid.checkGrid", (Operation) () -> {
+               scratch.copyFrom(board);
+               return scratch.checkGrid();
+            } },
+            { "GameGrid.merge", (Operation) () -> {
+               scratch.copyFrom(board);
+               scratch.merge();
+               return scratch.getScore();
+            } },
+            { "GameGrid.deleteTile", (Operation) () -> {
+               scratch.copyFrom(board);
+               scratch.deleteTile();
+               return scratch.getScore();
+            } },
+            { "GameGrid.updateGrid(Tile[][],Point)", (Operation) () -> {
+               scratch.copyFrom(board);
+               return scratch.updateGrid(landedTiles, landedPosition) ? 1 : 0;
+            } },
+            { "GameGrid.updateGrid(Tetromino)", (Operation) () -> {
+               scratch.copyFrom(board);
+               return scratch.updateGrid(landed) ? 1 : 0;
+            } },
+            { "Tetromino.canBeMoved", (Operation) () -> {
+               Tetromino probe = probes[probeIndex[0]++ & (PROBE_COUNT - 1)];
+               return (probe.canBeMoved(Direction.DOWN, board) ? 1 : 0)
+                     + (probe.canBeMoved(Direction.LEFT, board) ? 1 : 0);
+            } },
+            { "Tetromino.rotateClockwise", (Operation) () -> {
+               Tetromino probe = probes[probeIndex[0]++ & (PROBE_COUNT - 1)];
+               return probe.rotateClockwise(board) ? 1 : 0;
+            } },
+            { "Tetromino.createMinBoundedTileMatrix", (Operation) () -> {
+               landed.createMinBoundedTileMatrix();
+               return landed.getMinBoundedTileMatrix().length;
+            } },
+      };
+      for (Object[] operation : operations)
+         if (((String) operation[0]).contains(filter))
+            print((String) operation[0], size, fill, measure((Operation) operation[1]));
+   }
+
+   // A method that measures full game ticks (with random actions and a new
+   // game whenever a game is over) on a game grid of the given size
+   static void runTickBenchmark(int gridH, int gridW, String filter) {
+      String name = "GameEngine.step";
+      if (!name.contains(filter))
+         return;
+      GameRandom random = new GameRandom(3);
+      Action[] actions = Action.values();
+      GameEngine engine = new GameEngine(gridH, gridW, new GameRandom(5));
+      print(name, gridH + "x" + gridW, "-", measure(() -> {
+         if (!engine.step(actions[random.nextInt(actions.length)]))
+            engine.reset(random.nextLong(), false);
+         return engine.getTickCount();
+      }));
+   }
+
+   // A method that checks that the operations done while playing allocate no
+   // memory (after the warm-up) and returns whether all of them pass
+   static boolean checkAllocations() {
+      GameRandom random = new GameRandom(11);
+      Action[] actions = Action.values();
+      GameEngine engine = new GameEngine(20, 10, new GameRandom(13), true);
+      GameSnapshot snapshot = new GameSnapshot(20, 10);
+      KeyboardInput input = new KeyboardInput();
+      Action[] inputActions = new Action[8];
+      int[] keys = { KeyEvent.VK_LEFT, KeyEvent.VK_RIGHT, KeyEvent.VK_DOWN, KeyEvent.VK_A,
+            KeyEvent.VK_D, KeyEvent.VK_SPACE };
+      Object[][] operations = {
+            { "GameEngine.step (random actions)", (Operation) () -> {
+               if (!engine.step(actions[random.nextInt(actions.length)]))
+                  engine.reset(random.nextLong(), true);
+               return engine.getTickCount();
+            } },
+            { "GameEngine.apply + step (moves)", (Operation) () -> {
+               engine.apply(random.nextBoolean() ? Action.LEFT : Action.RIGHT);
+               engine.apply(random.nextBoolean() ? Action.ROTATE_CLOCKWISE
+                     : Action.ROTATE_COUNTERCLOCKWISE);
+               if (!engine.step(Action.NONE))
+                  engine.reset(random.nextLong(), true);
+               return engine.getTickCount();
+            } },
+            { "GameEngine.step (hard drops)", (Operation) () -> {
+               if (!engine.step(Action.HARD_DROP))
+                  engine.reset(random.nextLong(), true);
+               return engine.getLockedTetrominoCount();
+            } },
+            { "GameSnapshot.capture", (Operation) () -> {
+               if (!engine.step(actions[random.nextInt(actions.length)]))
+                  engine.reset(random.nextLong(), true);
+               snapshot.capture(engine);
+               return snapshot.getPieceCellCount();
+            } },
+            { "KeyboardInput.poll", (Operation) () -> {
+               long now = System.nanoTime();
+               int key = keys[random.nextInt(keys.length)];
+               input.enqueue(key, true, now);
+               input.enqueue(key, false, now);
+               return input.poll(now, inputActions);
+            } },
+      };
+      boolean passed = true;
+      System.out.printf("%-36s %12s %8s%n", "operation", "bytes", "result");
+      for (Object[] operation : operations) {
+         long allocated = measureAllocatedBytes((Operation) operation[1],
+               ALLOCATION_CHECK_COUNT);
+         boolean allocates = allocated > ALLOCATION_SLACK_BYTES;
+         System.out.printf("%-36s %12d %8s%n", operation[0], allocated,
+               allocates ? "FAIL" : "ok");
+         passed &= !allocates;
+      }
+      System.out.printf("(bytes allocated in %d runs of each operation)%n",
+            ALLOCATION_CHECK_COUNT);
+      return passed;
+   }
+
+   // The main method for running the benchmarks. The optional arguments are a
+   // filter for the names of the operations to run, "quick" for shorter
+   // measurements and "alloc" for checking the allocations instead.
+   public static void main(String[] args) {
+      String filter = "";
+      boolean allocationCheck = false;
+      for (String arg : args) {
+         if (arg.equals("quick")) {
+            warmupNanos /= 10;
+            batchNanos /= 10;
+         } else if (arg.equals("alloc"))
+            allocationCheck = true;
+         else
+            filter = arg;
+      }
+      if (allocationCheck) {
+         if (!checkAllocations())
+            System.exit(1);
+         return;
+      }
+      System.out.printf("%-36s %7s %7s %12s %12s%n", "operation", "size", "density",
+            "ns/op", "bytes/op");
+      for (int[] gridSize : GRID_SIZES) {
+         for (double density : DENSITIES)
+            runGridBenchmarks(gridSize[0], gridSize[1], density, filter);
+         runTickBenchmark(gridSize[0], gridSize[1], filter);
+      }
+   }
+}
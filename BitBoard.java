@@ -0,0 +1,78 @@
+import java.util.Arrays;
+
+// A class used for storing which cells of the game grid are occupied as bits,
+// one bit per cell and one or more 64-bit words per row, so that the collision
+// checks of the tetrominoes can be done with a few word operations for each
+// row (the full rows are found by the number of the occupied cells in each row
+// kept by GameGrid)
+public class BitBoard {
+   // data fields
+   private int height, width; // the size of the board (number of rows/columns)
+   private int wordsPerRow; // the number of 64-bit words used for each row
+   private long[] words; // the bits of all rows stored one row after another
+
+   // A constructor for creating an empty board with the given size
+   public BitBoard(int height, int width) {
+      this.height = height;
+      this.width = width;
+      wordsPerRow = (width + 63) >>> 6;
+      words = new long[height * wordsPerRow];
+   }
+
+   // A method that returns whether the cell at the given row and column is
+   // occupied (both indexes must be inside the board)
+   public boolean get(int row, int col) {
+      return (words[row * wordsPerRow + (col >>> 6)] & (1L << col)) != 0;
+   }
+
+   // A method for marking the cell at the given row and column as occupied
+   public void set(int row, int col) {
+      words[row * wordsPerRow + (col >>> 6)] |= 1L << col;
+   }
+
+   // A method for marking the cell at the given row and column as empty
+   public void clear(int row, int col) {
+      words[row * wordsPerRow + (col >>> 6)] &= ~(1L << col);
+   }
+
+   // A method for copying all the bits of the given board (of the same size)
+   public void copyFrom(BitBoard other) {
+      System.arraycopy(other.words, 0, words, 0, words.length);
+   }
+
+   // A method for marking all the cells of the board as empty
+   public void clearAll() {
+      Arrays.fill(words, 0);
+   }
+
+   // A method that returns whether any of the cells given by the bits of mask
+   // is occupied, where bit i of mask stands for the cell at column col + i of
+   // the given row (the cells must be inside the board)
+   public boolean intersects(int row, int col, long mask) {
+      int index = row * wordsPerRow + (col >>> 6), shift = col & 63;
+      if ((words[index] & (mask << shift)) != 0)
+         return true;
+      // the bits shifted out of the first word continue on the next word
+      return shift != 0 && (mask >>> (64 - shift)) != 0
+            && (words[index + 1] & (mask >>> (64 - shift))) != 0;
+   }
+
+   // A method for copying the bits of a row onto another row
+   public void copyRow(int fromRow, int toRow) {
+      System.arraycopy(words, fromRow * wordsPerRow, words, toRow * wordsPerRow, wordsPerRow);
+   }
+
+   // A method for marking all the cells in the given row as empty
+   public void clearRow(int row) {
+      Arrays.fill(words, row * wordsPerRow, (row + 1) * wordsPerRow, 0);
+   }
+
+   // Getter methods for the size of the board
+   public int getHeight() {
+      return height;
+   }
+
+   public int getWidth() {
+      return width;
+   }
+}
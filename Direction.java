@@ -0,0 +1,36 @@
+// An enum used for modeling the directions in which a tetromino can be moved on
+// the game grid
+public enum Direction {
+   LEFT(-1, 0), // move left by one
+   RIGHT(1, 0), // move right by one
+   DOWN(0, -1), // move down by one
+   HARD_DROP(0, -1); // move down as far as possible
+
+   // the change in the position of the tetromino for a single move
+   private final int dx, dy;
+
+   // A constructor for creating a direction with the given change in position
+   Direction(int dx, int dy) {
+      this.dx = dx;
+      this.dy = dy;
+   }
+
+   // Getter methods for the change in the position
+   public int getDx() {
+      return dx;
+   }
+
+   public int getDy() {
+      return dy;
+   }
+
+   // A method that returns the direction with the given name ("left", "right",
+   // "down" or "hard_drop" in any letter case). The names are compared by their
+   // contents, so strings that are not interned can also be used.
+   public static Direction fromString(String name) {
+      for (Direction direction : values())
+         if (direction.name().equalsIgnoreCase(name))
+            return direction;
+      throw new IllegalArgumentException("Invalid direction: " + name);
+   }
+}
@@ -0,0 +1,107 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// A class used for measuring where the time of each frame goes: the time of
+// each phase (reading the keyboard, the game logic, locking a tetromino and its
+// steps, taking the snapshot, drawing and showing the drawing) is measured with
+// System.nanoTime and recorded in a histogram of fixed size for that phase.
+// The percentiles can be shown on the screen while playing and written to a
+// file when the game is over.
+//
+// The profiler is turned on by the system property tetris.profile=true (or the
+// "profile" argument of the game, which sets the property before this class is
+// loaded). ENABLED is a static final field, so when the profiler is off the JIT
+// compiler removes the calls below as dead code and they cost nothing. The
+// histograms are not thread-safe, so only the thread of the game loop (and only
+// the game grid of the played game) records the times.
+public class FrameProfiler {
+   // Data fields: class variables
+   // --------------------------------------------------------------------------
+   // whether the times are measured (read once when the class is loaded)
+   public static final boolean ENABLED = Boolean.getBoolean("tetris.profile");
+
+   // An enum used for modeling the measured phases of a frame
+   public enum Phase {
+      INPUT, // reading the keyboard
+      LOGIC, // all the ticks of the game run in a frame
+      LOCK, // locking a tetromino and applying the rules below
+      CHECK_GRID, // clearing the full rows
+      MERGE, // merging the tiles
+      DELETE_TILE, // deleting the floating tiles
+      SNAPSHOT, // copying the state of the game for drawing
+      DRAW, // drawing the game on the offscreen canvas
+      SHOW, // showing the offscreen canvas on the screen (StdDraw.show)
+      FRAME // the whole frame (without waiting for the next tick)
+   }
+
+   private static final Phase[] PHASES = Phase.values();
+   // the histograms of the measured times (in nanoseconds) for each phase
+   private static final Histogram[] histograms = new Histogram[PHASES.length];
+   // whether the percentiles are drawn on the screen
+   private static boolean overlayVisible = true;
+
+   static {
+      for (int i = 0; i < PHASES.length; i++)
+         histograms[i] = new Histogram();
+   }
+
+   // Methods
+   // --------------------------------------------------------------------------
+   // A method that returns the current time for starting to measure a phase
+   // (0 when the profiler is off)
+   public static long now() {
+      return ENABLED ? System.nanoTime() : 0;
+   }
+
+   // A method that records the time of the given phase started at the given
+   // time and returns the current time (for starting to measure the next phase)
+   public static long record(Phase phase, long startTime) {
+      if (!ENABLED)
+         return 0;
+      long currentTime = System.nanoTime();
+      histograms[phase.ordinal()].record(currentTime - startTime);
+      return currentTime;
+   }
+
+   // A method for clearing the recorded times (e.g., when a new game starts)
+   public static void reset() {
+      for (Histogram histogram : histograms)
+         histogram.clear();
+   }
+
+   // A getter method for the histogram of the given phase
+   public static Histogram getHistogram(Phase phase) {
+      return histograms[phase.ordinal()];
+   }
+
+   // A method that returns whether the percentiles are drawn on the screen
+   public static boolean isOverlayVisible() {
+      return ENABLED && overlayVisible;
+   }
+
+   // A method for showing or hiding the percentiles on the screen
+   public static void toggleOverlay() {
+      overlayVisible = !overlayVisible;
+   }
+
+   // A method that returns a line of text with the percentiles of the given
+   // phase in microseconds (for the overlay)
+   public static String summaryOf(Phase phase) {
+      Histogram histogram = histograms[phase.ordinal()];
+      return String.format("%-11s %5.0f %5.0f %6.0f", phase.name().toLowerCase(),
+            histogram.getPercentile(50) / 1e3, histogram.getPercentile(99) / 1e3,
+            histogram.getMax() / 1e3);
+   }
+
+   // A method for writing the percentiles and the distributions of all the
+   // phases (in nanoseconds) to the given file
+   public static void dump(Path file) throws IOException {
+      try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+         out.println("Frame phase times in nanoseconds");
+         for (Phase phase : PHASES)
+            histograms[phase.ordinal()].print(out, phase.name().toLowerCase(), 10);
+      }
+   }
+}
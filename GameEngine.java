@@ -0,0 +1,262 @@
+import java.nio.ByteBuffer;
+
+// A class used for running the rules of the game without drawing anything, so
+// that complete games can be played (by the user, a bot or a simulation) both
+// with and without a display
+public class GameEngine {
+   // Data fields: class variables
+   // --------------------------------------------------------------------------
+   // the time of the game that passes in a single tick
+   public static final long TICK_NANOS = 100_000_000L; // 100 ms
+
+   // Data fields: instance variables
+   // --------------------------------------------------------------------------
+   private GameGrid grid; // the game grid on which the game is played
+   private Tetromino currentTetromino; // the tetromino that is being moved
+   private Tetromino nextTetromino; // the tetromino that will enter next
+   // used for determining the types, the tiles and the positions of the
+   // tetrominoes (the same seed gives the same game for the same actions)
+   private GameRandom random;
+   // the 7-bag generator of the types of the tetrominoes (null when each type
+   // is chosen independently)
+   private TetrominoBag bag;
+   // used for timing the auto fall and the locking of the active tetromino
+   private GravityScheduler gravity = new GravityScheduler();
+   private boolean gameOver = false; // shows whether the game is over or not
+   private long tickCount = 0; // the number of ticks played so far
+   private int lockedTetrominoCount = 0; // the number of landed tetrominoes
+
+   // Methods
+   // --------------------------------------------------------------------------
+   // A constructor for creating a game with the given size of the game grid
+   public GameEngine(int gridH, int gridW) {
+      this(gridH, gridW, new GameRandom(System.nanoTime()), false);
+   }
+
+   // A constructor for creating a game with the given size of the game grid and
+   // the given random number generator for the tetrominoes
+   public GameEngine(int gridH, int gridW, GameRandom random) {
+      this(gridH, gridW, random, false);
+   }
+
+   // A constructor for creating a game with the given size of the game grid,
+   // the given random number generator for the tetrominoes and whether their
+   // types are taken from a 7-bag generator
+   public GameEngine(int gridH, int gridW, GameRandom random, boolean useBag) {
+      this.random = random;
+      if (useBag)
+         bag = new TetrominoBag(random);
+      // create the game grid and the first tetrominoes to enter the game grid
+      grid = new GameGrid(gridH, gridW);
+      nextTetromino = createTetromino();
+      spawn();
+   }
+
+   // A method that starts a new game with the given seed (and the 7-bag
+   // generator or not) on the same game grid, so that a new game does not
+   // create a new game grid. The new game is the same as a game created by
+   // the constructor with a generator of the given seed.
+   public void reset(long seed, boolean useBag) {
+      random.setState(seed);
+      if (!useBag)
+         bag = null;
+      else if (bag == null)
+         bag = new TetrominoBag(random);
+      else
+         bag.reset();
+      gravity.reset();
+      gameOver = false;
+      tickCount = 0;
+      lockedTetrominoCount = 0;
+      grid.reset();
+      // reuse both tetrominoes of the last game
+      nextTetromino.reset(nextType(), random);
+      spawn();
+   }
+
+   // A method for creating a random shaped tetromino to enter the game grid
+   public Tetromino createTetromino() {
+      return new Tetromino(nextType(), random, grid.getGridHeight(),
+            grid.getGridWidth());
+   }
+
+   // A method that returns the type (shape) of the next tetromino, which is
+   // determined randomly
+   private char nextType() {
+      int randomIndex = bag != null ? bag.nextTypeIndex()
+            : random.nextInt(Tetromino.TYPES.length);
+      return Tetromino.TYPES[randomIndex];
+   }
+
+   // A method that makes the next tetromino the active one and creates a new
+   // next tetromino. The active tetromino (whose tiles have been locked on the
+   // game grid) is reused as the new next tetromino, so that no objects are
+   // created while the game is played.
+   public void spawn() {
+      Tetromino lockedTetromino = currentTetromino;
+      currentTetromino = nextTetromino;
+      if (lockedTetromino != null) {
+         lockedTetromino.reset(nextType(), random);
+         nextTetromino = lockedTetromino;
+      } else
+         nextTetromino = createTetromino();
+      gravity.startTetromino();
+   }
+
+   // A method that plays a single tick of the game by applying the given action
+   // to the active tetromino and then moving it down as many times as the auto
+   // fall is due (see GravityScheduler). The method returns false when the game
+   // is over and true otherwise.
+   public boolean step(Action action) {
+      if (gameOver)
+         return false;
+      apply(action);
+      // a hard drop may end the game by locking the tetromino
+      if (gameOver)
+         return false;
+      // move the active tetromino down for each fall due in this tick
+      boolean fallFailed = false;
+      int falls = gravity.takeFalls(gravity.getLevel(grid), grid.getGridHeight());
+      for (int i = 0; i < falls && !fallFailed; i++)
+         fallFailed = !currentTetromino.move(Direction.DOWN, grid);
+      tickCount++;
+      // lock the active tetromino on the grid when it has been on the ground
+      // (unable to go down) for the lock delay
+      boolean onGround = fallFailed || !currentTetromino.canBeMoved(Direction.DOWN, grid);
+      if (gravity.updateLock(onGround))
+         lockPiece();
+      return !gameOver;
+   }
+
+   // A method that applies the given action to the active tetromino and returns
+   // whether the tetromino has been moved (or rotated) or not
+   public boolean apply(Action action) {
+      boolean moved;
+      switch (action) {
+         case LEFT:
+            moved = currentTetromino.move(Direction.LEFT, grid);
+            break;
+         case RIGHT:
+            moved = currentTetromino.move(Direction.RIGHT, grid);
+            break;
+         case DOWN:
+            moved = currentTetromino.move(Direction.DOWN, grid);
+            break;
+         case ROTATE_CLOCKWISE:
+            moved = currentTetromino.rotateClockwise(grid);
+            break;
+         case ROTATE_COUNTERCLOCKWISE:
+            moved = currentTetromino.rotateCounterclockwise(grid);
+            break;
+         case HARD_DROP:
+            // move the tetromino to where it lands and lock it there
+            currentTetromino.move(Direction.HARD_DROP, grid);
+            lockPiece();
+            return true;
+         default:
+            return false;
+      }
+      // moving or rotating the tetromino on the ground delays its locking
+      if (moved)
+         gravity.resetLock();
+      return moved;
+   }
+
+   // A method that puts the active tetromino in the given rotation (0 to 3) with
+   // its bottom left cell in the given column, as done by a bot that decides
+   // where to place each tetromino, and returns whether it could be placed
+   public boolean place(int rotation, int col) {
+      return currentTetromino.setPlacement(rotation, col, grid);
+   }
+
+   // A method that locks the active tetromino on the game grid (where it is)
+   // and spawns the next one. The method returns true when the game is over.
+   public boolean lockPiece() {
+      long startTime = grid.isProfiled() ? FrameProfiler.now() : 0;
+      // update the game grid by locking the tiles of the landed tetromino
+      // (read from its cells, without creating a tile matrix)
+      gameOver = grid.updateGrid(currentTetromino);
+      lockedTetrominoCount++;
+      if (grid.isProfiled())
+         FrameProfiler.record(FrameProfiler.Phase.LOCK, startTime);
+      // create the next tetromino to enter the game grid
+      if (!gameOver)
+         spawn();
+      return gameOver;
+   }
+
+   // A method for writing the whole state of the game (the random number
+   // generator, the counters, the game grid and the tetrominoes) to the given
+   // buffer (for saving the game)
+   public void writeTo(ByteBuffer out) {
+      out.put((byte) (bag != null ? 1 : 0));
+      out.putLong(random.getState());
+      if (bag != null)
+         bag.writeTo(out);
+      out.putLong(tickCount);
+      out.putInt(lockedTetrominoCount);
+      out.put((byte) (gameOver ? 1 : 0));
+      grid.writeTo(out);
+      currentTetromino.writeTo(out);
+      nextTetromino.writeTo(out);
+      gravity.writeTo(out);
+   }
+
+   // A method that creates a game with the given size of the game grid from
+   // the state written by writeTo to the given buffer
+   public static GameEngine readFrom(ByteBuffer in, int gridH, int gridW) {
+      boolean useBag = in.get() != 0;
+      GameEngine engine = new GameEngine(gridH, gridW, new GameRandom(0), useBag);
+      engine.random.setState(in.getLong());
+      if (useBag)
+         engine.bag.readFrom(in);
+      engine.tickCount = in.getLong();
+      engine.lockedTetrominoCount = in.getInt();
+      engine.gameOver = in.get() != 0;
+      engine.grid.readFrom(in);
+      engine.currentTetromino = Tetromino.readFrom(in, gridH, gridW);
+      engine.nextTetromino = Tetromino.readFrom(in, gridH, gridW);
+      engine.gravity.readFrom(in);
+      return engine;
+   }
+
+   // A method that returns the current level of the game (it sets the speed
+   // of the auto fall)
+   public int getLevel() {
+      return gravity.getLevel(grid);
+   }
+
+   // Getter methods
+   // --------------------------------------------------------------------------
+   public GameRandom getRandom() {
+      return random;
+   }
+
+   public GameGrid getGrid() {
+      return grid;
+   }
+
+   public Tetromino getCurrentTetromino() {
+      return currentTetromino;
+   }
+
+   public Tetromino getNextTetromino() {
+      return nextTetromino;
+   }
+
+   public boolean isGameOver() {
+      return gameOver;
+   }
+
+   public long getTickCount() {
+      return tickCount;
+   }
+
+   public int getLockedTetrominoCount() {
+      return lockedTetrominoCount;
+   }
+
+   public long getScore() {
+      return grid.getScore();
+   }
+}
@@ -1,4 +1,4 @@
-import java.awt.*;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
@@ -7,21 +7,40 @@ import java.util.LinkedList;
 public class GameGrid {
    // data fields
    private int gridHeight, gridWidth; // the size of the game grid
-   private Tile[][] tileMatrix; // to store the tiles locked on the game grid
-   // the tetromino that is currently being moved on the game grid
-   private Tetromino currentTetromino = null;
+   // to store the tiles locked on the game grid as the exponents of their
+   // numbers (number = 2^exponent) row by row, where 0 is used for empty cells
+   private byte[] cells;
+   // the occupied cells of the game grid as bits (kept in sync with cells)
+   private BitBoard occupancy;
+   // the number of occupied cells in each row (a row is full when it is equal
+   // to gridWidth)
+   private int[] rowFill;
+   // the height of each column (the index of its topmost tile + 1, or 0 for
+   // empty columns) as the skyline of the locked tiles
+   private int[] columnHeights;
+   // the columns that may have tiles to merge since the last merge (columns
+   // changed by a landed tetromino or by cleared rows) as a worklist
+   private boolean[] isDirtyColumn;
+   private int[] dirtyColumns;
+   private int dirtyColumnCount;
+   // used by the flood fill that finds the floating tiles (the visited cells
+   // and the queue of the cells to visit)
+   private boolean[] isSupported;
+   private int[] cellQueue;
    // the gameOver flag shows whether the game is over or not
    private boolean gameOver = false;
-   private Color emptyCellColor; // the color used for the empty grid cells
-   private Color lineColor; // the color used for the grid lines
-   private Color boundaryColor; // the color used for the grid boundaries
-   private double lineThickness; // the thickness used for the grid lines
-   private double boxThickness; // the thickness used for the grid boundaries
-
-   private Tetromino nextTetromino = null;
-   private int score;
+   private long score;
+   private int clearedRowCount; // the number of full rows cleared so far
+   private int mergeCount; // the number of tile merges so far
+   private int maxExponent; // the exponent of the largest tile locked so far
+   // the number of times the locked tiles have been updated (used for finding
+   // out whether the locked tiles need to be drawn again)
+   private int updateCount;
+   // whether the rules applied on this game grid are timed by FrameProfiler
+   // (only for the game grid of the game being played, not for its copies)
+   private boolean isProfiled;
    
-   public int getScore() {
+   public long getScore() {
        return score;
    }
    
@@ -31,112 +50,89 @@ public class GameGrid {
       // set the size of the game grid as the given values for the parameters
       gridHeight = gridH;
       gridWidth = gridW;
-      // create the tile matrix to store the tiles locked on the game grid
-      tileMatrix = new Tile[gridHeight][gridWidth];
-      // set the color used for the empty grid cells
-      emptyCellColor = new Color(0, 0, 58);
-      // set the colors used for the grid lines and the grid boundaries
-      lineColor = new Color(0, 100, 200);
-      boundaryColor = new Color(0, 100, 200);
-      // set the thickness values used for the grid lines and the grid boundaries
-      lineThickness = 0.002;
-      
+      // create the cells to store the tiles locked on the game grid
+      cells = new byte[gridHeight * gridWidth];
+      occupancy = new BitBoard(gridHeight, gridWidth);
+      rowFill = new int[gridHeight];
+      columnHeights = new int[gridWidth];
+      isDirtyColumn = new boolean[gridWidth];
+      dirtyColumns = new int[gridWidth];
+      isSupported = new boolean[gridHeight * gridWidth];
+      cellQueue = new int[gridHeight * gridWidth];
       score=0;
-      boxThickness = 10 * lineThickness;
    }
 
-   // A setter method for the currentTetromino data field
-   public void setCurrentTetromino(Tetromino currentTetromino) {
-      this.currentTetromino = currentTetromino;
+   // A method for copying the locked tiles, the score and the columns to check
+   // for merges of the given game grid (of the same size) onto this game grid,
+   // e.g., for trying out moves on the copy without changing the given grid
+   public void copyFrom(GameGrid other) {
+      System.arraycopy(other.cells, 0, cells, 0, cells.length);
+      occupancy.copyFrom(other.occupancy);
+      System.arraycopy(other.rowFill, 0, rowFill, 0, gridHeight);
+      System.arraycopy(other.columnHeights, 0, columnHeights, 0, gridWidth);
+      System.arraycopy(other.isDirtyColumn, 0, isDirtyColumn, 0, gridWidth);
+      System.arraycopy(other.dirtyColumns, 0, dirtyColumns, 0, other.dirtyColumnCount);
+      dirtyColumnCount = other.dirtyColumnCount;
+      gameOver = other.gameOver;
+      score = other.score;
+      clearedRowCount = other.clearedRowCount;
+      mergeCount = other.mergeCount;
+      maxExponent = other.maxExponent;
+      updateCount = other.updateCount;
    }
 
-   // A setter method for the nextTetromino data field
-   public void setNextTetromino(Tetromino nextTetromino) {
-      this.nextTetromino = nextTetromino;
+   // A method that empties the game grid and clears its score and counters
+   // for a new game (so the game grid and its arrays are used again instead of
+   // creating new ones)
+   public void reset() {
+      Arrays.fill(cells, (byte) 0);
+      occupancy.clearAll();
+      Arrays.fill(rowFill, 0);
+      Arrays.fill(columnHeights, 0);
+      Arrays.fill(isDirtyColumn, false);
+      dirtyColumnCount = 0;
+      gameOver = false;
+      score = 0;
+      clearedRowCount = 0;
+      mergeCount = 0;
+      maxExponent = 0;
+      // the locked tiles have changed, so they must be drawn again
+      updateCount++;
    }
-   
-   // A method used for displaying the game grid
-   public void display() {
-      // clear the background to emptyCellColor
-      StdDraw.clear(emptyCellColor);
-      // draw the game grid
-      drawGrid();
-      // draw the current/active tetromino if it is not null (the case when the
-      // game grid is updated)
-      if (currentTetromino != null)
-         currentTetromino.draw();
-      // draw a box around the game grid
-      drawBoundaries();
-      drawSidebar();
-   
-      // show the resulting drawing with a pause duration = 50 ms
-      StdDraw.show();
-      StdDraw.pause(50);
+
+   // A method for writing the locked tiles, the score and the counters of the
+   // game grid to the given buffer (for saving the game)
+   public void writeTo(ByteBuffer out) {
+      out.put(cells);
+      out.putLong(score);
+      out.putInt(clearedRowCount);
+      out.putInt(mergeCount);
+      out.put((byte) maxExponent);
+      out.put((byte) (gameOver ? 1 : 0));
    }
-   
-   public void drawSidebar() {
-	    // colors used for the menu
-	    Color backgroundColor = new Color(42, 69, 99);
-	    Color buttonColor = new Color(250, 250, 58);
-	    Color textColor = new Color(31, 160, 239);
-	    double totalGridWidth = gridWidth + gridWidth / 3.0;
-	    double sidebarCenterX = totalGridWidth - (totalGridWidth / 3.0) / 2.0;
-	    double sidebarCenterY = gridHeight - (gridHeight / 3.0) / 2.0;
-	    StdDraw.setPenColor(buttonColor);
-	    // display the score text on top right
-	    Font font = new Font("Arial", Font.PLAIN, 25);
-	    StdDraw.setFont(font);
-	    StdDraw.setPenColor(buttonColor);
-	    String textToDisplay = "Score:";
-	    StdDraw.text(sidebarCenterX, sidebarCenterY, textToDisplay);
-	    textToDisplay = String.valueOf(score);
-	    StdDraw.text(sidebarCenterX, sidebarCenterY - 0.5, textToDisplay);
-	    textToDisplay = "Next";
-	    StdDraw.text(sidebarCenterX, sidebarCenterY - 5, textToDisplay);
-	    textToDisplay = "Tetromino:";
-	    StdDraw.text(sidebarCenterX, sidebarCenterY - 5.5, textToDisplay);
-	 // Draw the next tetromino
-	    if (nextTetromino != null) {
-	        double tetrominoDrawX = sidebarCenterX - 1;
-	        double tetrominoDrawY = sidebarCenterY - 8;
-	        nextTetromino.draw(tetrominoDrawX, tetrominoDrawY);
-	    }
-
-	}
-
-   // A method for drawing the cells and the lines of the game grid
-   public void drawGrid() {
-	  deleteTile(); 
-      // for each cell of the game grid
-      for (int row = 0; row < gridHeight; row++)
-         for (int col = 0; col < gridWidth; col++)
-            // draw the tile if the grid cell is occupied by a tile
-            if (tileMatrix[row][col] != null)
-               tileMatrix[row][col].draw(new Point(col, row));
-      // draw the inner lines of the grid
-      StdDraw.setPenColor(lineColor);
-      StdDraw.setPenRadius(lineThickness);
-      // x and y ranges for the game grid
-      double startX = -0.5, endX = gridWidth - 0.5;
-      double startY = -0.5, endY = gridHeight - 0.5;
-      for (double x = startX + 1; x < endX; x++) // vertical inner lines
-         StdDraw.line(x, startY, x, endY);
-      for (double y = startY + 1; y < endY; y++) // horizontal inner lines
-         StdDraw.line(startX, y, endX, y);
-      StdDraw.setPenRadius(); // reset the pen radius to its default value
-   }
-
-   // A method for drawing the boundaries around the game grid
-   public void drawBoundaries() {
-      // draw a bounding box around the game grid as a rectangle
-      StdDraw.setPenColor(boundaryColor); // using boundaryColor
-      // set the pen radius as boxThickness (half of this thickness is visible
-      // for the bounding box as its lines lie on the boundaries of the canvas)
-      StdDraw.setPenRadius(boxThickness);
-      // the center point coordinates for the game grid
-      double centerX = gridWidth / 2 - 0.5, centerY = gridHeight / 2 - 0.5;
-      StdDraw.rectangle(centerX, centerY, gridWidth / 2, gridHeight / 2);
-      StdDraw.setPenRadius(); // reset the pen radius to its default value
+
+   // A method for reading the locked tiles, the score and the counters written
+   // by writeTo from the given buffer onto this game grid (of the same size)
+   public void readFrom(ByteBuffer in) {
+      for (int row = 0; row < gridHeight; row++) {
+         for (int col = 0; col < gridWidth; col++) {
+            int exponent = in.get();
+            if (exponent < 0 || exponent > Tile.MAX_EXPONENT)
+               throw new IllegalArgumentException("Invalid tile exponent: " + exponent);
+            setExponent(row, col, exponent);
+         }
+      }
+      score = in.getLong();
+      clearedRowCount = in.getInt();
+      mergeCount = in.getInt();
+      maxExponent = in.get();
+      gameOver = in.get() != 0;
+      // all the columns have changed, so all of them are checked for merges
+      // (a saved game has nothing to merge, but any other game grid may have)
+      for (int col = 0; col < gridWidth; col++)
+         markColumnDirty(col);
+      // the locked tiles have changed, so they must be drawn again
+      updateCount++;
    }
 
    // A method for checking whether the grid cell with given row and column
@@ -146,8 +142,157 @@ public class GameGrid {
       // tiles out of the game grid (above the topmost grid row)
       if (!isInside(row, col))
          return false;
-      // the cell is occupied by a tile if it is not null
-      return tileMatrix[row][col] != null;
+      // the cell is occupied by a tile if its bit is set
+      return occupancy.get(row, col);
+   }
+
+   // A method that returns whether a tetromino given by its row masks collides
+   // with the grid boundaries or the locked tiles. rowMasks[i] holds the cells
+   // of the tetromino in the row bottomRow + i as bits (bit j for the column
+   // leftCol + j). Cells above the topmost grid row are not considered as
+   // collisions (possible for newly entered tetrominoes to the game grid).
+   public boolean collides(long[] rowMasks, int rowCount, int bottomRow, int leftCol) {
+      for (int i = 0; i < rowCount; i++) {
+         long mask = rowMasks[i];
+         if (mask == 0)
+            continue;
+         // the leftmost and the rightmost columns of the cells in this row
+         int minCol = leftCol + Long.numberOfTrailingZeros(mask);
+         int maxCol = leftCol + 63 - Long.numberOfLeadingZeros(mask);
+         if (minCol < 0 || maxCol >= gridWidth)
+            return true;
+         int row = bottomRow + i;
+         if (row < 0)
+            return true;
+         if (row < gridHeight && occupancy.intersects(row, minCol,
+               mask >>> Long.numberOfTrailingZeros(mask)))
+            return true;
+      }
+      return false;
+   }
+
+   // A method that returns the lowest bottom row at which a tetromino given by
+   // its row masks (as in the collides method) can be placed by moving it down
+   // from the given bottom row without any collisions
+   public int landingRow(long[] rowMasks, int rowCount, int bottomRow, int leftCol) {
+      // when the tetromino is above the skyline in all of its columns, it lands
+      // on the skyline, which is found by checking each of its columns once
+      int landingRow = Integer.MIN_VALUE;
+      long seenColumns = 0;
+      for (int i = 0; i < rowCount; i++) {
+         // the columns whose lowest cell in the tetromino is in this row
+         long lowestCells = rowMasks[i] & ~seenColumns;
+         seenColumns |= rowMasks[i];
+         while (lowestCells != 0) {
+            int col = leftCol + Long.numberOfTrailingZeros(lowestCells);
+            lowestCells &= lowestCells - 1;
+            // the tetromino is below the skyline in this column (e.g., under
+            // an overhang), so move it down one row at a time instead
+            if (bottomRow + i < columnHeights[col])
+               return landingRowByCollisions(rowMasks, rowCount, bottomRow, leftCol);
+            landingRow = Math.max(landingRow, columnHeights[col] - i);
+         }
+      }
+      return landingRow;
+   }
+
+   // A method that finds the landing row (as in the landingRow method) by
+   // moving the tetromino down one row at a time until it collides
+   private int landingRowByCollisions(long[] rowMasks, int rowCount, int bottomRow,
+         int leftCol) {
+      while (!collides(rowMasks, rowCount, bottomRow - 1, leftCol))
+         bottomRow--;
+      return bottomRow;
+   }
+
+   // A method that returns the height of the given column (the index of its
+   // topmost tile + 1, or 0 when the column is empty)
+   public int getColumnHeight(int col) {
+      return columnHeights[col];
+   }
+
+   // A method for finding the height of the given column by looking for its
+   // topmost tile from the given row downwards
+   private void findColumnHeight(int col, int fromRow) {
+      int row = fromRow;
+      while (row >= 0 && cells[row * gridWidth + col] == 0)
+         row--;
+      columnHeights[col] = row + 1;
+   }
+
+   // A method that returns the exponent of the number on the tile locked on
+   // the grid cell with the given row and column indexes (0 for empty cells)
+   public int getExponent(int row, int col) {
+      return cells[row * gridWidth + col];
+   }
+
+   // A method for placing a tile with the given exponent (or 0 for an empty
+   // cell) on the grid cell with the given row and column indexes
+   private void setExponent(int row, int col, int exponent) {
+      int index = row * gridWidth + col;
+      // update the number of occupied cells in the row
+      if (cells[index] == 0 && exponent != 0)
+         rowFill[row]++;
+      else if (cells[index] != 0 && exponent == 0)
+         rowFill[row]--;
+      cells[index] = (byte) exponent;
+      if (exponent > maxExponent)
+         maxExponent = exponent;
+      if (exponent == 0)
+         occupancy.clear(row, col);
+      else
+         occupancy.set(row, col);
+      // update the height of the column
+      if (exponent != 0 && row >= columnHeights[col])
+         columnHeights[col] = row + 1;
+      else if (exponent == 0 && row == columnHeights[col] - 1)
+         findColumnHeight(col, row - 1);
+   }
+
+   // Getter methods for the size of the game grid
+   public int getGridHeight() {
+      return gridHeight;
+   }
+
+   public int getGridWidth() {
+      return gridWidth;
+   }
+
+   // A getter method for the number of full rows cleared so far
+   public int getClearedRowCount() {
+      return clearedRowCount;
+   }
+
+   // A getter method for the number of times the locked tiles were updated
+   public int getUpdateCount() {
+      return updateCount;
+   }
+
+   // A getter method for the number of tile merges so far
+   public int getMergeCount() {
+      return mergeCount;
+   }
+
+   // A method that returns a hash of the numbers on the locked tiles (FNV-1a),
+   // e.g., for checking that a replayed game ends with the same game grid
+   public long getBoardHash() {
+      long hash = 0xCBF29CE484222325L;
+      for (byte exponent : cells)
+         hash = (hash ^ exponent) * 0x100000001B3L;
+      return hash;
+   }
+
+   // A getter method for the exponent of the largest tile locked so far
+   public int getMaxExponent() {
+      return maxExponent;
+   }
+
+   // A method for adding the given column to the columns to check for merges
+   private void markColumnDirty(int col) {
+      if (!isDirtyColumn[col]) {
+         isDirtyColumn[col] = true;
+         dirtyColumns[dirtyColumnCount++] = col;
+      }
    }
 
    // A method for checking whether the cell with given row and column indexes
@@ -164,8 +309,6 @@ public class GameGrid {
    // checking if the game is over due to having tiles above the topmost grid row.
    // The method returns true when the game is over and false otherwise.
    public boolean updateGrid(Tile[][] tilesToLock, Point blcPosition) {
-      // necessary for the display method to stop displaying the tetromino
-      currentTetromino = null;
       // lock the tiles of the current tetromino (tilesToLock) on the game grid
       int nRows = tilesToLock.length, nCols = tilesToLock[0].length;
       for (int col = 0; col < nCols; col++) {
@@ -173,124 +316,230 @@ public class GameGrid {
             // place each tile onto the game grid
             if (tilesToLock[row][col] != null) {
                // compute the position of the tile on the game grid
-               Point pos = new Point();
-               pos.setX(blcPosition.getX() + col);
-               pos.setY(blcPosition.getY() + (nRows - 1) - row);
-               if (isInside(pos.getY(), pos.getX()))
-                  tileMatrix[pos.getY()][pos.getX()] = tilesToLock[row][col];
+               int gridCol = blcPosition.getX() + col;
+               int gridRow = blcPosition.getY() + (nRows - 1) - row;
+               if (isInside(gridRow, gridCol)) {
+                  setExponent(gridRow, gridCol, tilesToLock[row][col].getExponent());
+                  markColumnDirty(gridCol);
+               }
                // the game is over if any placed tile is above the game grid
                else
                   gameOver = true;
             }
          }
       } 
+      return updateLockedTiles();
+   }
+
+   // A method that locks the tiles of the given landed tetromino on the game
+   // grid (as the method above does) by reading the cells of the tetromino
+   public boolean updateGrid(Tetromino tetromino) {
+      for (int i = 0; i < Tetromino.CELL_COUNT; i++) {
+         int row = tetromino.getCellRow(i), col = tetromino.getCellCol(i);
+         if (isInside(row, col)) {
+            setExponent(row, col, tetromino.getTile(i).getExponent());
+            markColumnDirty(col);
+         }
+         // the game is over if any placed tile is above the game grid
+         else
+            gameOver = true;
+      }
+      return updateLockedTiles();
+   }
+
+   // A method that clears the full rows, merges the tiles and deletes the
+   // floating tiles after a tetromino is locked, and returns the gameOver flag
+   private boolean updateLockedTiles() {
+      long time = isProfiled ? FrameProfiler.now() : 0;
       checkGrid();
+      if (isProfiled)
+         time = FrameProfiler.record(FrameProfiler.Phase.CHECK_GRID, time);
       merge();
+      if (isProfiled)
+         time = FrameProfiler.record(FrameProfiler.Phase.MERGE, time);
+      // remove the tiles left floating by the changes above (done here instead
+      // of while drawing so that the game does not need a display)
+      deleteTile();
+      if (isProfiled)
+         FrameProfiler.record(FrameProfiler.Phase.DELETE_TILE, time);
+      updateCount++;
       // return the value of the gameOver flag
       return gameOver;
-     
+   }
+
+   // A setter method for whether the rules applied on this game grid are timed
+   // by FrameProfiler (when it is enabled)
+   public void setProfiled(boolean isProfiled) {
+      this.isProfiled = FrameProfiler.ENABLED && isProfiled;
+   }
+
+   public boolean isProfiled() {
+      return isProfiled;
+   }
+
+   // A method that returns the number of the tiles locked on the game grid
+   public int getTileCount() {
+      return occupiedCellCount();
    }
    
    
-   public void checkGrid() {
+   // A method that clears all the full rows in a single pass from the bottom
+   // row to the top row. The tiles on the full rows are added to the score and
+   // each remaining row is moved down (in place) by the number of full rows
+   // below it. The method returns the number of the cleared rows.
+   public int checkGrid() {
+       int clearedRows = 0, topClearedRow = -1;
        for (int row = 0; row < gridHeight; row++) {
-           if (!Arrays.asList(tileMatrix[row]).contains(null)) {
-               deleteRow(row);
-               moveRow(row);
-               checkGrid();
+           if (rowFill[row] == gridWidth) {
+               topClearedRow = row;
+               // the row is full: add its tiles to the score
+               for (int col = 0; col < gridWidth; col++)
+                   score += Tile.valueOf(cells[row * gridWidth + col]);
+               clearedRows++;
+           } else if (clearedRows > 0) {
+               // move the row down by the number of full rows below it
+               moveRow(row, row - clearedRows);
            }
        }
+       // empty the topmost rows left behind by the moved rows
+       for (int row = gridHeight - clearedRows; row < gridHeight; row++) {
+           Arrays.fill(cells, row * gridWidth, (row + 1) * gridWidth, (byte) 0);
+           occupancy.clearRow(row);
+           rowFill[row] = 0;
+       }
+       clearedRowCount += clearedRows;
+       // every column has moved, so all of them are checked for merges
+       if (clearedRows > 0) {
+           for (int col = 0; col < gridWidth; col++) {
+               markColumnDirty(col);
+               // the columns with tiles above the cleared rows get shorter
+               // by the number of the cleared rows, the others are searched
+               if (columnHeights[col] > topClearedRow + 1)
+                   columnHeights[col] -= clearedRows;
+               else
+                   findColumnHeight(col, columnHeights[col] - 1);
+           }
+       }
+       return clearedRows;
    }
    
    
    
+   // A method that merges the tiles with the same number on top of each other
+   // (as in 2048) in the columns that have changed since the last merge. The
+   // merges in a column do not affect the other columns, so each column is
+   // resolved on its own by always merging its lowest pair of tiles first.
    public void merge() {
-       for (int row_i = 0; row_i < gridHeight - 1; row_i++) {
-           for (int col_i = 0; col_i < gridWidth; col_i++) {
-               if (tileMatrix[row_i][col_i] != null && tileMatrix[row_i + 1][col_i] != null) {
-                   if (tileMatrix[row_i][col_i].getNumber() == tileMatrix[row_i + 1][col_i].getNumber()) {
-                       score += tileMatrix[row_i][col_i].getNumber() * 2;
-                       tileMatrix[row_i][col_i].doubleNumber();
-                       tileMatrix[row_i + 1][col_i] = null;
-                       moveColumn(col_i, row_i + 1);
-                       merge();
-                   }
-               }
-           }
+       for (int i = 0; i < dirtyColumnCount; i++) {
+           int col = dirtyColumns[i];
+           isDirtyColumn[col] = false;
+           mergeColumn(col);
        }
-
+       dirtyColumnCount = 0;
    }
-   // Method for deleting a row when it is full
-   private void deleteRow(int row) {
-       for (int i = 0; i < gridWidth; i++) {
-           int newScore = tileMatrix[row][i].getNumber();
-           score += newScore;
+
+   // Method for merging the tiles in a column starting from the lowest pair
+   // (only up to the topmost tile of the column, as the cells above it are
+   // empty)
+   private void mergeColumn(int col) {
+       int row = 0;
+       while (row < columnHeights[col] - 1) {
+           int exponent = getExponent(row, col);
+           // tiles with the same number merge unless their number has
+           // reached the largest number that can be stored
+           if (exponent != 0 && exponent < Tile.MAX_EXPONENT
+                   && exponent == getExponent(row + 1, col)) {
+               score += Tile.valueOf(exponent + 1);
+               mergeCount++;
+               setExponent(row, col, exponent + 1);
+               setExponent(row + 1, col, 0);
+               moveColumn(col, row + 1);
+               // the merged tile may now merge with the tile below it
+               if (row > 0)
+                   row--;
+           } else {
+               row++;
+           }
        }
+   }
 
-       tileMatrix = removeRow(tileMatrix, row);
-       tileMatrix = addEmptyRow(tileMatrix);
+   // Method to move all the tiles on a row to another row (replacing the
+   // tiles on that row) when full rows are cleared
+   private void moveRow(int fromRow, int toRow) {
+       System.arraycopy(cells, fromRow * gridWidth, cells, toRow * gridWidth, gridWidth);
+       occupancy.copyRow(fromRow, toRow);
+       rowFill[toRow] = rowFill[fromRow];
    }
 
-   // Helper method to remove a row from the tile matrix
-   private Tile[][] removeRow(Tile[][] matrix, int row) {
-       Tile[][] newMatrix = new Tile[matrix.length - 1][matrix[0].length];
+   // Method for moving tiles down in a column when a tile is removed (the
+   // tiles above the given row up to the topmost tile of the column move down
+   // by one row and the topmost cell is emptied)
+   private void moveColumn(int col, int startRow) {
+       int top = columnHeights[col];
+       if (startRow >= top)
+           return;
+       for (int row = startRow; row < top - 1; row++)
+           setExponent(row, col, getExponent(row + 1, col));
+       setExponent(top - 1, col, 0);
+   }
 
-       for (int i = 0; i < row; i++) {
-           newMatrix[i] = matrix[i];
+   // Method for deleting the floating tiles and updating the score. A tile is
+   // floating when it is not connected to any tile on the bottom row through
+   // the tiles on its left, right, top and bottom. All such tiles are found in
+   // one pass by a flood fill that starts from the tiles on the bottom row.
+   public void deleteTile() {
+       Arrays.fill(isSupported, false);
+       int head = 0, tail = 0;
+       // start from the tiles on the bottom row
+       for (int col = 0; col < gridWidth; col++) {
+           if (cells[col] != 0) {
+               isSupported[col] = true;
+               cellQueue[tail++] = col;
+           }
        }
-       for (int i = row + 1; i < matrix.length; i++) {
-           newMatrix[i - 1] = matrix[i];
+       // visit all the tiles connected to the visited tiles
+       while (head < tail) {
+           int index = cellQueue[head++];
+           int row = index / gridWidth, col = index % gridWidth;
+           if (row > 0)
+               tail = visit(index - gridWidth, tail);
+           if (row < gridHeight - 1)
+               tail = visit(index + gridWidth, tail);
+           if (col > 0)
+               tail = visit(index - 1, tail);
+           if (col < gridWidth - 1)
+               tail = visit(index + 1, tail);
+       }
+       // all the tiles are connected to the bottom row if all have been visited
+       if (tail == occupiedCellCount())
+           return;
+       // delete the tiles that have not been visited
+       for (int row = 0; row < gridHeight; row++) {
+           for (int col = 0; col < gridWidth; col++) {
+               int index = row * gridWidth + col;
+               if (cells[index] != 0 && !isSupported[index]) {
+                   score += Tile.valueOf(cells[index]);
+                   setExponent(row, col, 0);
+               }
+           }
        }
-       return newMatrix;
    }
 
-   // Helper method to add an empty row to the top of the tile matrix
-   private Tile[][] addEmptyRow(Tile[][] matrix) {
-       Tile[][] newMatrix = new Tile[matrix.length + 1][matrix[0].length];
-       for (int i = 0; i < matrix.length; i++) {
-           newMatrix[i] = matrix[i];
-       }
-       newMatrix[matrix.length] = new Tile[matrix[0].length];
-       return newMatrix;
-   }
-
-   // Method for moving tiles down when a row is deleted
-// Method to move a row down when a row is deleted
-   private void moveRow(int row) {
-	    for (int row_i = row; row_i < gridHeight - 1; row_i++) {
-	        for (int col_i = 0; col_i < gridWidth; col_i++) {
-	            if (tileMatrix[row_i + 1][col_i] != null) {
-	                tileMatrix[row_i][col_i] = tileMatrix[row_i + 1][col_i];
-	                tileMatrix[row_i + 1][col_i] = null;
-	            }
-	        }
-	    }
-	}
-
-   // Method for moving tiles down in a column when a tile is removed
-   private void moveColumn(int col, int startRow) {
-       for (int row = startRow; row < gridHeight - 1; row++) {
-           tileMatrix[row][col] = tileMatrix[row + 1][col];
-           tileMatrix[row + 1][col] = null;
+   // Method for adding the cell with the given index to the flood fill queue
+   // if it has a tile that has not been visited yet (returns the new tail)
+   private int visit(int index, int tail) {
+       if (cells[index] != 0 && !isSupported[index]) {
+           isSupported[index] = true;
+           cellQueue[tail++] = index;
        }
+       return tail;
    }
 
-   // Method for deleting a tile and updating the score when no tiles are around it
-   public void deleteTile() {
-       for (int row_i = 1; row_i < gridHeight - 1; row_i++) {
-           for (int col_i = 1; col_i < gridWidth - 1; col_i++) {
-               if (tileMatrix[row_i][col_i] != null) {
-                   if (tileMatrix[row_i + 1][col_i] == null &&
-                           tileMatrix[row_i - 1][col_i] == null &&
-                           tileMatrix[row_i][col_i + 1] == null &&
-                           tileMatrix[row_i][col_i - 1] == null) {
-                	   int newScore = tileMatrix[row_i][col_i].getNumber();
-                	   score += newScore;
-                	   tileMatrix[row_i][col_i] = null;
-                	   //deleteTile();
-                   }
-               }              
-           }
-       }
+   // Method that returns the number of the tiles locked on the game grid
+   private int occupiedCellCount() {
+       int count = 0;
+       for (int row = 0; row < gridHeight; row++)
+           count += rowFill[row];
+       return count;
    }
 }
\ No newline at end of file
@@ -0,0 +1,223 @@
+// A class used for running a game with a fixed timestep. The auto fall (and
+// the locking, clearing rows, merging and deleting floating tiles after it)
+// happens in ticks of a fixed duration, and the game is drawn from a snapshot
+// taken after the ticks. When drawing takes too long, the missed ticks are run
+// before the next drawing, so the game plays the same no matter how often (or
+// whether) it is drawn. The keys are read from a KeyboardInput, which wakes the
+// loop up as soon as a key is pressed, and their actions are applied (all of
+// them, in order) right away instead of waiting for the next tick.
+public class GameLoop {
+   // Data fields: class variables
+   // --------------------------------------------------------------------------
+   // the duration of a single tick of the game
+   public static final long TICK_NANOS = GameEngine.TICK_NANOS;
+   // the maximum number of missed ticks run before drawing (the game does not
+   // try to catch up with longer delays, e.g., when the window is dragged)
+   public static final int MAX_TICKS_PER_FRAME = 5;
+   // the number of ticks between two autosaves of the game
+   public static final int AUTOSAVE_TICKS = 50; // 5 seconds
+   // the most actions of the keys applied in a frame
+   private static final int MAX_ACTIONS_PER_FRAME = 32;
+
+   // Data fields: instance variables
+   // --------------------------------------------------------------------------
+   private GameEngine engine; // the game that is played
+   private GameRenderer renderer; // used for drawing the game
+   private GameSnapshot snapshot; // the state of the game that is drawn
+   private boolean gamePaused = false; // shows whether the game is paused
+   // the keys pressed and released by the user and their actions in a frame
+   private KeyboardInput input = new KeyboardInput();
+   private Action[] actions = new Action[MAX_ACTIONS_PER_FRAME];
+   // the bot that plays the game instead of the keyboard (null if none) and the
+   // number of the locked tetrominoes when it has placed the current one
+   private AutoPlayer autoPlayer;
+   private int placedCount;
+   // the recorder of the actions applied in each tick (null if not recording)
+   private Replay.Recorder recorder;
+   // the player of a recorded game that gives the actions instead of the
+   // keyboard (null if not replaying)
+   private Replay.Player replayPlayer;
+   // used for saving the game in the background once in AUTOSAVE_TICKS ticks
+   // and when the game is paused (null if the game is not saved)
+   private GameSave.Autosaver autosaver;
+
+   // Methods
+   // --------------------------------------------------------------------------
+   // A constructor for creating a game loop for the given game and renderer
+   public GameLoop(GameEngine engine, GameRenderer renderer) {
+      this.engine = engine;
+      this.renderer = renderer;
+      GameGrid grid = engine.getGrid();
+      snapshot = new GameSnapshot(grid.getGridHeight(), grid.getGridWidth());
+   }
+
+   // A method that runs the game until it is over (it can be called again for
+   // each new game started on the same game engine)
+   public void run() {
+      gamePaused = false;
+      placedCount = -1;
+      // the menus are drawn on the canvas, so draw everything again
+      renderer.invalidate();
+      // time the phases of the frames of this game (if the profiler is on)
+      FrameProfiler.reset();
+      engine.getGrid().setProfiled(true);
+      input.install();
+      try {
+         runFrames();
+      } finally {
+         input.uninstall();
+      }
+   }
+
+   // A method that runs the frames of the game until it is over
+   private void runFrames() {
+      long previousTime = System.nanoTime();
+      long lag = TICK_NANOS; // the time that the game logic is behind
+      while (!engine.isGameOver()) {
+         long currentTime = System.nanoTime();
+         lag += currentTime - previousTime;
+         previousTime = currentTime;
+         // read all the keys pressed and released since the last frame
+         long frameStartTime = FrameProfiler.now();
+         int actionCount = readInput(currentTime);
+         long logicStartTime = FrameProfiler.record(FrameProfiler.Phase.INPUT, frameStartTime);
+         // If the game is paused, wait for the next key (or the next repeat of
+         // a held key) without using the CPU and don't process the game loop
+         // further
+         if (gamePaused) {
+            input.await(input.getNextRepeatTime());
+            lag = 0;
+            continue;
+         }
+         // apply the actions of the keys right away (not in the next tick), so
+         // a key press moves the tetromino in the next drawing
+         boolean changed = applyActions(actionCount);
+         // let the bot place each new tetromino and drop it down
+         Action action = Action.NONE;
+         if (autoPlayer != null && !engine.isGameOver())
+            action = nextBotAction();
+         // the recorded actions are applied in every tick while replaying
+         boolean replaying = replayPlayer != null;
+         // run the ticks that are due (the action is applied in the first one)
+         int tickCount = 0;
+         while (lag >= TICK_NANOS && !engine.isGameOver()) {
+            Action tickAction = tickCount == 0 ? action : Action.NONE;
+            if (replaying)
+               tickAction = replayPlayer.nextAction(engine);
+            if (recorder != null)
+               recorder.recordStep(tickAction);
+            engine.step(tickAction);
+            lag -= TICK_NANOS;
+            if (++tickCount == MAX_TICKS_PER_FRAME) {
+               lag = 0;
+               break;
+            }
+         }
+         if (tickCount > 0 || changed)
+            FrameProfiler.record(FrameProfiler.Phase.LOGIC, logicStartTime);
+         // save the game in the background when an autosave is due
+         if (autosaver != null && tickCount > 0 && !engine.isGameOver()
+               && engine.getTickCount() % AUTOSAVE_TICKS < tickCount)
+            autosaver.save(engine);
+         // draw the game from a snapshot taken after the ticks and the actions
+         if (tickCount > 0 || changed) {
+            long snapshotStartTime = FrameProfiler.now();
+            snapshot.capture(engine);
+            FrameProfiler.record(FrameProfiler.Phase.SNAPSHOT, snapshotStartTime);
+            renderer.display(snapshot);
+            FrameProfiler.record(FrameProfiler.Phase.FRAME, frameStartTime);
+         }
+         // wait until the next tick or the next repeat of a held key is due,
+         // or until a key is pressed or released
+         input.await(Math.min(currentTime + TICK_NANOS - lag, input.getNextRepeatTime()));
+      }
+   }
+
+   // A method that reads the keyboard and returns the number of the actions
+   // of the keys put into the actions array (0 when the keys do not control
+   // the game), and shows the frame times or pauses/resumes the game when the
+   // F or the P key is pressed
+   private int readInput(long currentTime) {
+      int actionCount = input.poll(currentTime, actions);
+      // the F key shows or hides the frame times (if the profiler is on)
+      if (input.takeOverlayKeyPressed() && FrameProfiler.ENABLED) {
+         FrameProfiler.toggleOverlay();
+         renderer.invalidate();
+      }
+      if (input.takePausePressed()) {
+         gamePaused = !gamePaused;
+         GameGrid grid = engine.getGrid();
+         if (gamePaused) {
+            if (autosaver != null)
+               autosaver.save(engine);
+            Tetris2048.displayPauseMenu(grid.getGridHeight(), grid.getGridWidth());
+            StdDraw.show();
+         }
+         // the pause menu is drawn on the game, so draw everything again
+         renderer.invalidate();
+      }
+      // the bot or the replay controls the game instead of the keys
+      if (autoPlayer != null || replayPlayer != null)
+         return 0;
+      return actionCount;
+   }
+
+   // A method that applies the given number of actions of the keys to the
+   // game (and records them) and returns whether any action has been applied
+   private boolean applyActions(int actionCount) {
+      boolean applied = false;
+      for (int i = 0; i < actionCount && !engine.isGameOver(); i++) {
+         if (recorder != null)
+            recorder.recordApply(actions[i]);
+         engine.apply(actions[i]);
+         applied = true;
+      }
+      return applied;
+   }
+
+   // A method that lets the bot decide where to place the current tetromino
+   // when it appears and returns the action for moving it down there
+   private Action nextBotAction() {
+      // a new tetromino appears whenever a tetromino is locked (the
+      // tetromino objects are reused, so they cannot be compared)
+      if (engine.getLockedTetrominoCount() != placedCount) {
+         AutoPlayer.Placement placement = autoPlayer.play(engine);
+         if (recorder != null)
+            recorder.recordPlacement(placement.getRotation(), placement.getCol());
+         placedCount = engine.getLockedTetrominoCount();
+      }
+      return Action.DOWN;
+   }
+
+   // A setter method for the keyboard input (e.g., with a different timing of
+   // the repeats of the held keys)
+   public void setKeyboardInput(KeyboardInput input) {
+      this.input = input;
+   }
+
+   // A setter method for the bot that plays the game (null for the keyboard)
+   public void setAutoPlayer(AutoPlayer autoPlayer) {
+      this.autoPlayer = autoPlayer;
+   }
+
+   // A setter method for the recorder of the actions (null for none)
+   public void setRecorder(Replay.Recorder recorder) {
+      this.recorder = recorder;
+   }
+
+   // A setter method for the player of a recorded game whose actions are
+   // applied instead of the keyboard (null for none)
+   public void setReplayPlayer(Replay.Player replayPlayer) {
+      this.replayPlayer = replayPlayer;
+   }
+
+   // A setter method for the autosaver of the game (null for none)
+   public void setAutosaver(GameSave.Autosaver autosaver) {
+      this.autosaver = autosaver;
+   }
+
+   // A getter method for the snapshot of the game that is drawn
+   public GameSnapshot getSnapshot() {
+      return snapshot;
+   }
+}
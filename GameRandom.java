@@ -0,0 +1,77 @@
+// A class used for modeling the random number generator of a game (the types,
+// the positions and the numbers of the tetrominoes). It is a SplitMix64
+// generator: its whole state is a single long that can be saved and restored,
+// and the same seed always gives the same numbers, so the games can be played
+// again (e.g., for replays and benchmarks). It can be split into independent
+// generators for running games in parallel. A generator must be used by only
+// one thread at a time.
+public class GameRandom {
+   // Data fields: class variables
+   // --------------------------------------------------------------------------
+   // the amount added to the state for each number (the golden ratio)
+   private static final long GAMMA = 0x9E3779B97F4A7C15L;
+   // the generators used by the constructors without a generator (one for each
+   // thread, seeded from the clock)
+   private static final ThreadLocal<GameRandom> DEFAULT = ThreadLocal.withInitial(
+         () -> new GameRandom(System.nanoTime() ^ Thread.currentThread().getId() * GAMMA));
+
+   // Data fields: instance variables
+   // --------------------------------------------------------------------------
+   private long state; // the state of the generator
+
+   // Methods
+   // --------------------------------------------------------------------------
+   // A constructor for creating a generator with the given seed
+   public GameRandom(long seed) {
+      state = seed;
+   }
+
+   // A method that returns the generator of the current thread that is used
+   // when no generator is given (e.g., by the default constructor of Tile)
+   public static GameRandom current() {
+      return DEFAULT.get();
+   }
+
+   // A method that returns the next random long value
+   public long nextLong() {
+      return mix(state += GAMMA);
+   }
+
+   // A method that returns a random int value from 0 (inclusive) to the given
+   // bound (exclusive) by scaling the upper 32 bits of the next value
+   public int nextInt(int bound) {
+      if (bound <= 0)
+         throw new IllegalArgumentException("The bound must be positive: " + bound);
+      return (int) (((nextLong() >>> 32) * bound) >>> 32);
+   }
+
+   // A method that returns a random boolean value
+   public boolean nextBoolean() {
+      return nextLong() < 0;
+   }
+
+   // A method that returns a new generator that gives numbers independent of
+   // the numbers of this generator (and of the other generators split from it)
+   public GameRandom split() {
+      return new GameRandom(mix(nextLong()));
+   }
+
+   // A method that mixes the bits of the given value (the finalizer of
+   // SplitMix64, a variant of the one used by MurmurHash3)
+   private static long mix(long z) {
+      z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+      z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+      return z ^ (z >>> 31);
+   }
+
+   // Getter and setter methods for the state of the generator (for saving and
+   // restoring the state of a game)
+   // --------------------------------------------------------------------------
+   public long getState() {
+      return state;
+   }
+
+   public void setState(long state) {
+      this.state = state;
+   }
+}
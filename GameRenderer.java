@@ -0,0 +1,203 @@
+import java.awt.Color; // the color type used in StdDraw
+import java.awt.Font; // the font type used in StdDraw
+
+// A class used for drawing the game from a snapshot of its state. The drawing
+// only reads the snapshot, so the game logic does not depend on whether (or how
+// often) the game is drawn. Only the parts of the drawing that have changed
+// since the last frame are drawn again.
+public class GameRenderer {
+   // data fields
+   private int gridHeight, gridWidth; // the size of the game grid
+   private Color emptyCellColor; // the color used for the empty grid cells
+   private Color lineColor; // the color used for the grid lines
+   private Color boundaryColor; // the color used for the grid boundaries
+   private double lineThickness; // the thickness used for the grid lines
+   private double boxThickness; // the thickness used for the grid boundaries
+   // the colors and the font used for the sidebar
+   private Color sidebarTextColor = new Color(250, 250, 58);
+   private Font sidebarFont = new Font("Arial", Font.PLAIN, 25);
+   // the font used for the frame times of the profiler (monospaced to align
+   // the columns)
+   private Font profilerFont = new Font("Monospaced", Font.PLAIN, 11);
+   // the position reused for drawing each tile
+   private Point position = new Point();
+   // whether everything must be drawn again in the next frame
+   private boolean fullRedrawNeeded = true;
+   // the update count of the locked tiles that are on the drawing canvas
+   private int drawnGridUpdateCount = -1;
+   // the cells of the tetromino that is on the drawing canvas
+   private int drawnPieceCellCount = 0;
+   private int[] drawnPieceCellRows = new int[4], drawnPieceCellCols = new int[4];
+   // the cells of the ghost of the tetromino that is on the drawing canvas
+   private int drawnGhostCellCount = 0;
+   private int[] drawnGhostCellRows = new int[4], drawnGhostCellCols = new int[4];
+   // the color used for the ghost of the tetromino (where it will land)
+   private Color ghostColor = new Color(150, 150, 190);
+
+   // A constructor for creating a renderer for the given size of the game grid
+   public GameRenderer(int gridH, int gridW) {
+      gridHeight = gridH;
+      gridWidth = gridW;
+      // set the color used for the empty grid cells
+      emptyCellColor = new Color(0, 0, 58);
+      // set the colors used for the grid lines and the grid boundaries
+      lineColor = new Color(0, 100, 200);
+      boundaryColor = new Color(0, 100, 200);
+      // set the thickness values used for the grid lines and the grid boundaries
+      lineThickness = 0.002;
+      boxThickness = 10 * lineThickness;
+   }
+
+   // A method that makes the next call of the display method draw everything
+   // again (e.g., after a menu is drawn on the game)
+   public void invalidate() {
+      fullRedrawNeeded = true;
+   }
+
+   // A method used for displaying the game from the given snapshot. The locked
+   // tiles, the grid lines, the boundaries and the sidebar stay on the drawing
+   // canvas between the frames (as the canvas is cleared only here), so they
+   // are drawn again only when the locked tiles or the score change. Otherwise,
+   // only the cells of the tetromino drawn in the last frame are cleared and
+   // the tetromino is drawn at its current position.
+   public void display(GameSnapshot snapshot) {
+      long drawStartTime = FrameProfiler.now();
+      if (fullRedrawNeeded || snapshot.getGridUpdateCount() != drawnGridUpdateCount) {
+         // clear the background to emptyCellColor
+         StdDraw.clear(emptyCellColor);
+         // draw the game grid
+         drawGrid(snapshot);
+         drawSidebar(snapshot);
+         drawnGridUpdateCount = snapshot.getGridUpdateCount();
+         fullRedrawNeeded = false;
+      } else {
+         // clear the cells of the tetromino and its ghost drawn in the last frame
+         for (int i = 0; i < drawnPieceCellCount; i++)
+            drawEmptyCell(drawnPieceCellCols[i], drawnPieceCellRows[i]);
+         for (int i = 0; i < drawnGhostCellCount; i++)
+            drawEmptyCell(drawnGhostCellCols[i], drawnGhostCellRows[i]);
+      }
+      // draw where the current tetromino will land and the tetromino itself
+      drawGhost(snapshot);
+      drawTetromino(snapshot);
+      // draw a box around the game grid
+      drawBoundaries();
+      FrameProfiler.record(FrameProfiler.Phase.DRAW, drawStartTime);
+      // draw the frame times on the sidebar (not measured as a part of drawing)
+      if (FrameProfiler.isOverlayVisible())
+         drawProfilerOverlay();
+      // show the resulting drawing
+      long showStartTime = FrameProfiler.now();
+      StdDraw.show();
+      FrameProfiler.record(FrameProfiler.Phase.SHOW, showStartTime);
+   }
+
+   // A method for drawing the percentiles of the frame times measured by
+   // FrameProfiler at the bottom of the sidebar (over the last drawn values)
+   private void drawProfilerOverlay() {
+      FrameProfiler.Phase[] phases = FrameProfiler.Phase.values();
+      double left = gridWidth - 0.5, width = gridWidth / 3.0;
+      double lineHeight = 0.3, top = 0.5 + (phases.length + 1) * lineHeight;
+      StdDraw.setPenColor(emptyCellColor);
+      StdDraw.filledRectangle(left + width / 2, (top - 0.5) / 2, width / 2, (top + 0.5) / 2);
+      StdDraw.setFont(profilerFont);
+      StdDraw.setPenColor(sidebarTextColor);
+      StdDraw.textLeft(left + 0.1, top - lineHeight, "phase (us)    p50   p99    max");
+      for (int i = 0; i < phases.length; i++)
+         StdDraw.textLeft(left + 0.1, top - (i + 2) * lineHeight,
+               FrameProfiler.summaryOf(phases[i]));
+   }
+
+   // A method for drawing an empty cell of the game grid with its lines
+   private void drawEmptyCell(int col, int row) {
+      StdDraw.setPenColor(emptyCellColor);
+      StdDraw.filledSquare(col, row, 0.5);
+      StdDraw.setPenColor(lineColor);
+      StdDraw.setPenRadius(lineThickness);
+      StdDraw.square(col, row, 0.5);
+      StdDraw.setPenRadius(); // reset the pen radius to its default value
+   }
+
+   // A method for drawing the score, the level and the next tetromino on the
+   // sidebar
+   public void drawSidebar(GameSnapshot snapshot) {
+      double totalGridWidth = gridWidth + gridWidth / 3.0;
+      double sidebarCenterX = totalGridWidth - (totalGridWidth / 3.0) / 2.0;
+      double sidebarCenterY = gridHeight - (gridHeight / 3.0) / 2.0;
+      // display the score text on top right
+      StdDraw.setFont(sidebarFont);
+      StdDraw.setPenColor(sidebarTextColor);
+      StdDraw.text(sidebarCenterX, sidebarCenterY, "Score:");
+      StdDraw.text(sidebarCenterX, sidebarCenterY - 0.5, String.valueOf(snapshot.getScore()));
+      StdDraw.text(sidebarCenterX, sidebarCenterY - 1.5, "Level:");
+      StdDraw.text(sidebarCenterX, sidebarCenterY - 2, String.valueOf(snapshot.getLevel()));
+      StdDraw.text(sidebarCenterX, sidebarCenterY - 5, "Next");
+      StdDraw.text(sidebarCenterX, sidebarCenterY - 5.5, "Tetromino:");
+   }
+
+   // A method for drawing the cells and the lines of the game grid
+   public void drawGrid(GameSnapshot snapshot) {
+      // for each cell of the game grid
+      for (int row = 0; row < gridHeight; row++) {
+         for (int col = 0; col < gridWidth; col++) {
+            // draw the tile if the grid cell is occupied by a tile
+            int exponent = snapshot.getExponent(row, col);
+            if (exponent != 0) {
+               position.move(col, row);
+               Tile.forExponent(exponent).draw(position);
+            }
+         }
+      }
+      // draw the inner lines of the grid
+      StdDraw.setPenColor(lineColor);
+      StdDraw.setPenRadius(lineThickness);
+      // x and y ranges for the game grid
+      double startX = -0.5, endX = gridWidth - 0.5;
+      double startY = -0.5, endY = gridHeight - 0.5;
+      for (double x = startX + 1; x < endX; x++) // vertical inner lines
+         StdDraw.line(x, startY, x, endY);
+      for (double y = startY + 1; y < endY; y++) // horizontal inner lines
+         StdDraw.line(startX, y, endX, y);
+      StdDraw.setPenRadius(); // reset the pen radius to its default value
+   }
+
+   // A method for drawing the tiles of the current tetromino (the cells are
+   // stored for clearing them in the next frame)
+   public void drawTetromino(GameSnapshot snapshot) {
+      drawnPieceCellCount = snapshot.getPieceCellCount();
+      for (int i = 0; i < drawnPieceCellCount; i++) {
+         drawnPieceCellCols[i] = snapshot.getPieceCellCol(i);
+         drawnPieceCellRows[i] = snapshot.getPieceCellRow(i);
+         position.move(drawnPieceCellCols[i], drawnPieceCellRows[i]);
+         Tile.forExponent(snapshot.getPieceCellExponent(i)).draw(position);
+      }
+   }
+
+   // A method for drawing the ghost of the current tetromino as the outlines
+   // of the cells where it will land (the cells are stored for clearing them
+   // in the next frame)
+   public void drawGhost(GameSnapshot snapshot) {
+      drawnGhostCellCount = snapshot.getGhostCellCount();
+      StdDraw.setPenColor(ghostColor);
+      StdDraw.setPenRadius(2 * lineThickness);
+      for (int i = 0; i < drawnGhostCellCount; i++) {
+         drawnGhostCellCols[i] = snapshot.getGhostCellCol(i);
+         drawnGhostCellRows[i] = snapshot.getGhostCellRow(i);
+         StdDraw.square(drawnGhostCellCols[i], drawnGhostCellRows[i], 0.4);
+      }
+      StdDraw.setPenRadius(); // reset the pen radius to its default value
+   }
+
+   // A method for drawing the boundaries around the game grid
+   public void drawBoundaries() {
+      // draw a bounding box around the game grid as a rectangle
+      StdDraw.setPenColor(boundaryColor); // using boundaryColor
+      // set the pen radius as boxThickness (half of this thickness is visible
+      // for the bounding box as its lines lie on the boundaries of the canvas)
+      StdDraw.setPenRadius(boxThickness);
+      // the center point coordinates for the game grid
+      double centerX = gridWidth / 2 - 0.5, centerY = gridHeight / 2 - 0.5;
+      StdDraw.rectangle(centerX, centerY, gridWidth / 2, gridHeight / 2);
+      StdDraw.setPenRadius(); // reset the pen radius to its default value
+   }
+}
@@ -0,0 +1,178 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+// A class used for modeling a saved state of a game that can be written to a
+// file and resumed later (or sent to another process). The state is copied
+// into a small buffer when the save is taken, so it can be written to the file
+// on another thread while the game goes on.
+//
+// The file has a header (MAGIC, VERSION, the length and the CRC32 checksum of
+// the state) followed by the state: the size of the game grid and everything
+// written by GameEngine.writeTo. A save is small, so it is written and read
+// with a single channel write or read of a heap buffer. The files are never
+// memory mapped: a file with a live mapping cannot be replaced or deleted on
+// Windows until the mapping is garbage collected. A save is first written to
+// a temporary file that then replaces the old save, so a crash while saving
+// never leaves a broken save behind.
+public class GameSave {
+   // Data fields: class variables
+   // --------------------------------------------------------------------------
+   private static final int MAGIC = 0x54325356; // "T2SV"
+   private static final int VERSION = 1;
+   private static final int HEADER_SIZE = 4 + 2 + 4 + 4;
+   // the size of the state without the cells of the game grid (the counters,
+   // the random number generator, the 7-bag, two tetrominoes and the state of
+   // the auto fall)
+   private static final int FIXED_STATE_SIZE = 128;
+
+   // Data fields: instance variables
+   // --------------------------------------------------------------------------
+   private ByteBuffer state; // the saved state (from position 0 to its limit)
+
+   // Methods
+   // --------------------------------------------------------------------------
+   // A constructor for creating a save with the given state
+   private GameSave(ByteBuffer state) {
+      this.state = state;
+   }
+
+   // A method that copies the state of the given game into a new save
+   public static GameSave capture(GameEngine engine) {
+      GameGrid grid = engine.getGrid();
+      int gridHeight = grid.getGridHeight(), gridWidth = grid.getGridWidth();
+      ByteBuffer state = ByteBuffer.allocate(FIXED_STATE_SIZE + gridHeight * gridWidth);
+      state.putShort((short) gridHeight);
+      state.putShort((short) gridWidth);
+      engine.writeTo(state);
+      state.flip();
+      return new GameSave(state);
+   }
+
+   // A method that creates a new game from the saved state
+   public GameEngine restore() {
+      ByteBuffer in = state.duplicate();
+      int gridHeight = in.getShort(), gridWidth = in.getShort();
+      return GameEngine.readFrom(in, gridHeight, gridWidth);
+   }
+
+   // A method for writing the save to the given file
+   public void write(Path file) throws IOException {
+      Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+      int length = state.remaining();
+      CRC32 crc = new CRC32();
+      crc.update(state.duplicate());
+      ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + length);
+      out.putInt(MAGIC);
+      out.putShort((short) VERSION);
+      out.putInt(length);
+      out.putInt((int) crc.getValue());
+      out.put(state.duplicate());
+      out.flip();
+      try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+         while (out.hasRemaining())
+            channel.write(out);
+         channel.force(false);
+      }
+      try {
+         Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING,
+               StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+         Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+   }
+
+   // A method for reading the save in the given file
+   public static GameSave read(Path file) throws IOException {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+         long size = channel.size();
+         if (size < HEADER_SIZE || size > Integer.MAX_VALUE)
+            throw new IOException("Not a saved game: " + file);
+         ByteBuffer in = ByteBuffer.allocate((int) size);
+         while (in.hasRemaining())
+            if (channel.read(in) < 0)
+               throw new IOException("Truncated saved game: " + file);
+         in.flip();
+         if (in.getInt() != MAGIC)
+            throw new IOException("Not a saved game: " + file);
+         int version = in.getShort();
+         if (version != VERSION)
+            throw new IOException("Unsupported save version " + version + ": " + file);
+         int length = in.getInt(), checksum = in.getInt();
+         if (length != in.remaining())
+            throw new IOException("Truncated saved game: " + file);
+         // check the state after the header
+         ByteBuffer state = in.slice();
+         CRC32 crc = new CRC32();
+         crc.update(state.duplicate());
+         if ((int) crc.getValue() != checksum)
+            throw new IOException("Corrupted saved game: " + file);
+         return new GameSave(state);
+      }
+   }
+
+   // A getter method for the size of the saved state in bytes
+   public int getSize() {
+      return state.remaining();
+   }
+
+   // A class used for saving a game to a file in the background: the state is
+   // captured on the thread that runs the game and written to the file by a
+   // single background thread, and a save is skipped while the previous one is
+   // still being written, so saving never makes the game wait
+   public static class Autosaver {
+      private Path file; // the file that the game is saved to
+      private ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+         Thread thread = new Thread(runnable, "autosave");
+         thread.setDaemon(true);
+         return thread;
+      });
+      private AtomicBoolean isWriting = new AtomicBoolean();
+
+      // A constructor for creating an autosaver for the given file
+      public Autosaver(Path file) {
+         this.file = file;
+      }
+
+      // A method that saves the given game in the background (unless the last
+      // save is still being written) and returns whether it has been started
+      public boolean save(GameEngine engine) {
+         if (!isWriting.compareAndSet(false, true))
+            return false;
+         GameSave save = capture(engine);
+         executor.execute(() -> {
+            try {
+               save.write(file);
+            } catch (IOException e) {
+               System.out.println("Cannot save the game: " + e.getMessage());
+            } finally {
+               isWriting.set(false);
+            }
+         });
+         return true;
+      }
+
+      // A method that deletes the save (e.g., when the game is over) after the
+      // saves being written, and stops the background thread
+      public void discard() {
+         executor.execute(() -> {
+            try {
+               Files.deleteIfExists(file);
+            } catch (IOException e) {
+               System.out.println("Cannot delete the saved game: " + e.getMessage());
+            }
+         });
+         executor.shutdown();
+      }
+   }
+}
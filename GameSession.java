@@ -0,0 +1,169 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool; // used by the bot for parallel search
+
+// A class used for running the games of a session one after another in the
+// same window: the menus, the game and the game over menu, until the user
+// exits. The game (the game grid, the tetrominoes and their generators), the
+// renderer, the game loop and the bot are created once and reset in place for
+// each new game, so the memory and the stack used do not grow however many
+// games are played.
+public class GameSession {
+   // data fields
+   private boolean botMode = false; // whether the games are played by the bot
+   // whether the types of the tetrominoes are taken from a 7-bag generator
+   private boolean bagMode = false;
+   // the directory where each game is recorded as a replay file (null for not
+   // recording) and the file where the game is saved in the background (null
+   // for not saving)
+   private File recordDirectory;
+   private Path saveFile;
+   // the delay before a held left or right arrow key repeats and the interval
+   // of the repeats
+   private long dasNanos = KeyboardInput.DEFAULT_DAS_NANOS;
+   private long arrNanos = KeyboardInput.DEFAULT_ARR_NANOS;
+   // the seed of the first game (the next games are seeded from the clock)
+   private long firstSeed = System.nanoTime();
+   // the replay played instead of the keyboard and the saved game resumed
+   // (only in the first game, null if none)
+   private Replay replay;
+   private GameEngine resumedEngine;
+
+   // A method that runs the games of the session until the user exits
+   public void run() {
+      // the first game (the grid size of a replay or a resumed game is kept
+      // for the whole session)
+      GameEngine engine;
+      if (resumedEngine != null)
+         engine = resumedEngine;
+      else if (replay != null)
+         engine = replay.createEngine();
+      else
+         engine = new GameEngine(12, 8, new GameRandom(firstSeed), bagMode);
+      int gridH = engine.getGrid().getGridHeight(), gridW = engine.getGrid().getGridWidth();
+      // set the size of the drawing canvas
+      int canvasH = 80 * gridH, canvasW = 80 * gridW + gridW/3 * 80;
+      StdDraw.setCanvasSize(canvasW, canvasH);
+      // set the scale of the coordinate system
+      StdDraw.setXscale(-0.5, gridW + ((double) gridW / 3) - 0.5);
+      StdDraw.setYscale(-0.5, gridH - 0.5);
+      // double buffering enables computer animations, creating an illusion of
+      // motion by repeating four steps: clear, draw, show and pause
+      StdDraw.enableDoubleBuffering();
+
+      // the game loop that runs the game logic in fixed ticks and draws the
+      // game after them (used for all the games of the session)
+      GameLoop gameLoop = new GameLoop(engine, new GameRenderer(gridH, gridW));
+      gameLoop.setKeyboardInput(new KeyboardInput(dasNanos, arrNanos,
+            KeyboardInput.DEFAULT_SOFT_DROP_NANOS));
+      AutoPlayer autoPlayer = null;
+      if (botMode)
+         autoPlayer = new AutoPlayer(8, true, ForkJoinPool.commonPool());
+      long seed = firstSeed;
+      while (true) {
+         // display a simple menu and the how to play menu before the game
+         Tetris2048.displayGameMenu(gridH, gridW);
+         Tetris2048.displayHowToPlayMenu(gridH, gridW);
+         playGame(engine, gameLoop, autoPlayer, seed);
+         // end the session unless a new game is chosen in the game over menu
+         if (!Tetris2048.displayGameOver(gridH, gridW, engine.getGrid()))
+            return;
+         // start a new game on the same game grid (the replay and the resumed
+         // game are only for the first game)
+         replay = null;
+         resumedEngine = null;
+         seed = System.nanoTime();
+         engine.reset(seed, bagMode);
+      }
+   }
+
+   // A method that plays the given game with the given seed until it is over
+   // and reports the results on the console
+   private void playGame(GameEngine engine, GameLoop gameLoop, AutoPlayer autoPlayer,
+         long seed) {
+      if (resumedEngine == null)
+         System.out.println("Seed: " + (replay != null ? replay.getSeed() : seed));
+      Replay.Recorder recorder = null;
+      gameLoop.setReplayPlayer(replay != null ? replay.player() : null);
+      gameLoop.setAutoPlayer(replay == null ? autoPlayer : null);
+      // a resumed game cannot be recorded as it does not start from its seed
+      if (replay == null && recordDirectory != null && resumedEngine == null) {
+         GameGrid grid = engine.getGrid();
+         recorder = new Replay.Recorder(grid.getGridHeight(), grid.getGridWidth(), seed, bagMode);
+      }
+      gameLoop.setRecorder(recorder);
+      GameSave.Autosaver autosaver = null;
+      if (saveFile != null && replay == null)
+         autosaver = new GameSave.Autosaver(saveFile);
+      gameLoop.setAutosaver(autosaver);
+      gameLoop.run();
+      // the game is over, so there is nothing left to resume
+      if (autosaver != null)
+         autosaver.discard();
+      // write the frame times of the game to a file
+      if (FrameProfiler.ENABLED) {
+         try {
+            FrameProfiler.dump(Paths.get("frame-profile.txt"));
+            System.out.println("Wrote the frame times to frame-profile.txt");
+         } catch (IOException e) {
+            System.out.println("Cannot write the frame times: " + e.getMessage());
+         }
+      }
+
+      // print a message on the console that the game is over
+      System.out.println("Game over!");
+      if (replay != null)
+         System.out.println(replay.matches(engine) ? "The replay ends as recorded."
+               : "The replay does not end as recorded!");
+      if (recorder != null) {
+         File file = new File(recordDirectory, "game-" + seed + ".replay");
+         try {
+            recordDirectory.mkdirs();
+            recorder.finish(engine).write(file);
+            System.out.println("Recorded the game to " + file);
+         } catch (IOException e) {
+            System.out.println("Cannot record the game: " + e.getMessage());
+         }
+      }
+      if (autoPlayer != null && replay == null)
+         System.out.printf("Bot decisions per second: %.1f%n",
+               autoPlayer.getDecisionsPerSecond());
+   }
+
+   // Setter methods
+   // --------------------------------------------------------------------------
+   public void setBotMode(boolean botMode) {
+      this.botMode = botMode;
+   }
+
+   public void setBagMode(boolean bagMode) {
+      this.bagMode = bagMode;
+   }
+
+   public void setRecordDirectory(File recordDirectory) {
+      this.recordDirectory = recordDirectory;
+   }
+
+   public void setSaveFile(Path saveFile) {
+      this.saveFile = saveFile;
+   }
+
+   public void setKeyRepeat(long dasNanos, long arrNanos) {
+      this.dasNanos = dasNanos;
+      this.arrNanos = arrNanos;
+   }
+
+   public void setFirstSeed(long firstSeed) {
+      this.firstSeed = firstSeed;
+   }
+
+   public void setReplay(Replay replay) {
+      this.replay = replay;
+   }
+
+   public void setResumedEngine(GameEngine resumedEngine) {
+      this.resumedEngine = resumedEngine;
+   }
+}
@@ -0,0 +1,138 @@
+// A class used for modeling a read-only copy of the state of a game that is
+// taken after the game logic has run, so that the game can be drawn without
+// reading (or changing) the game grid and the tetrominoes themselves
+public class GameSnapshot {
+   // data fields
+   private int gridHeight, gridWidth; // the size of the game grid
+   // the exponents of the numbers on the locked tiles (0 for empty cells)
+   private byte[] cells;
+   private long score; // the score of the game
+   private int level; // the level of the game (it sets the speed of the fall)
+   // the number of times the locked tiles were updated (changes only when the
+   // locked tiles, the score or the level change)
+   private int gridUpdateCount = -1;
+   // the cells of the current tetromino that are inside the game grid
+   private int pieceCellCount;
+   private int[] pieceCellRows = new int[4], pieceCellCols = new int[4];
+   private int[] pieceCellExponents = new int[4];
+   // the cells inside the game grid where the current tetromino would land by
+   // a hard drop (shown as the ghost of the tetromino)
+   private int ghostCellCount;
+   private int[] ghostCellRows = new int[4], ghostCellCols = new int[4];
+   private boolean gameOver; // whether the game is over or not
+   private long tickCount; // the number of ticks played when the copy is taken
+
+   // A constructor for creating an empty snapshot for the given grid size
+   public GameSnapshot(int gridHeight, int gridWidth) {
+      this.gridHeight = gridHeight;
+      this.gridWidth = gridWidth;
+      cells = new byte[gridHeight * gridWidth];
+   }
+
+   // A method that copies the current state of the given game into this
+   // snapshot (used only by the game loop, which owns all the state changes)
+   void capture(GameEngine engine) {
+      GameGrid grid = engine.getGrid();
+      // copy the locked tiles only when they have changed since the last copy
+      if (gridUpdateCount != grid.getUpdateCount()) {
+         for (int row = 0; row < gridHeight; row++)
+            for (int col = 0; col < gridWidth; col++)
+               cells[row * gridWidth + col] = (byte) grid.getExponent(row, col);
+         score = grid.getScore();
+         level = engine.getLevel();
+         gridUpdateCount = grid.getUpdateCount();
+      }
+      gameOver = engine.isGameOver();
+      tickCount = engine.getTickCount();
+      // copy the cells of the current tetromino that are inside the game grid
+      pieceCellCount = 0;
+      ghostCellCount = 0;
+      Tetromino tetromino = engine.getCurrentTetromino();
+      if (tetromino == null || gameOver)
+         return;
+      for (int i = 0; i < Tetromino.CELL_COUNT; i++) {
+         if (tetromino.getCellRow(i) < gridHeight) {
+            pieceCellRows[pieceCellCount] = tetromino.getCellRow(i);
+            pieceCellCols[pieceCellCount] = tetromino.getCellCol(i);
+            pieceCellExponents[pieceCellCount] = tetromino.getTile(i).getExponent();
+            pieceCellCount++;
+         }
+      }
+      // copy the cells where the current tetromino would land (if it is not
+      // already there)
+      int dropDistance = tetromino.getDropDistance(grid);
+      if (dropDistance == 0)
+         return;
+      for (int i = 0; i < Tetromino.CELL_COUNT; i++) {
+         int row = tetromino.getCellRow(i) - dropDistance;
+         if (row < gridHeight) {
+            ghostCellRows[ghostCellCount] = row;
+            ghostCellCols[ghostCellCount] = tetromino.getCellCol(i);
+            ghostCellCount++;
+         }
+      }
+   }
+
+   // Getter methods
+   // --------------------------------------------------------------------------
+   public int getGridHeight() {
+      return gridHeight;
+   }
+
+   public int getGridWidth() {
+      return gridWidth;
+   }
+
+   // returns the exponent of the number on the locked tile at the given cell
+   public int getExponent(int row, int col) {
+      return cells[row * gridWidth + col];
+   }
+
+   public long getScore() {
+      return score;
+   }
+
+   public int getLevel() {
+      return level;
+   }
+
+   public int getGridUpdateCount() {
+      return gridUpdateCount;
+   }
+
+   public int getPieceCellCount() {
+      return pieceCellCount;
+   }
+
+   public int getPieceCellRow(int i) {
+      return pieceCellRows[i];
+   }
+
+   public int getPieceCellCol(int i) {
+      return pieceCellCols[i];
+   }
+
+   public int getPieceCellExponent(int i) {
+      return pieceCellExponents[i];
+   }
+
+   public int getGhostCellCount() {
+      return ghostCellCount;
+   }
+
+   public int getGhostCellRow(int i) {
+      return ghostCellRows[i];
+   }
+
+   public int getGhostCellCol(int i) {
+      return ghostCellCols[i];
+   }
+
+   public boolean isGameOver() {
+      return gameOver;
+   }
+
+   public long getTickCount() {
+      return tickCount;
+   }
+}
@@ -0,0 +1,126 @@
+import java.nio.ByteBuffer;
+
+// A class used for timing the auto fall and the locking of the active
+// tetromino by the time of the game instead of by counting the ticks. The time
+// since the last fall is kept in an accumulator, and the tetromino falls once
+// for each fall interval in it, so it can fall more than once in a tick when
+// the game is fast (or when it catches up after late frames). The time of the
+// game is the number of ticks played times GameEngine.TICK_NANOS, so the game
+// plays the same however fast the ticks are run (in real time by the game loop
+// or as fast as possible without a display).
+//
+// The fall interval gets shorter as the level goes up (the curve of the
+// Tetris guideline), and the level goes up with the rows cleared and the tiles
+// merged. A tetromino on the ground is locked after the lock delay, and moving
+// or rotating it starts the lock delay again (at most MAX_LOCK_RESETS times).
+public class GravityScheduler {
+   // Data fields: class variables
+   // --------------------------------------------------------------------------
+   public static final int MAX_LEVEL = 20;
+   // the level goes up once in this many lines (a cleared row is a line, and
+   // MERGES_PER_LINE merged tiles count as a line)
+   public static final int LINES_PER_LEVEL = 10;
+   public static final int MERGES_PER_LINE = 8;
+   // the time a tetromino can stay on the ground before it is locked and the
+   // number of times moving or rotating it can start this time again
+   public static final long LOCK_DELAY_NANOS = 500_000_000L; // 500 ms
+   public static final int MAX_LOCK_RESETS = 15;
+   // the fall interval of each level (from 1 to MAX_LEVEL) in nanoseconds:
+   // (0.8 - (level - 1) * 0.007) ^ (level - 1) seconds, computed with
+   // StrictMath so that it is the same on every computer (for the replays)
+   private static final long[] FALL_INTERVALS = new long[MAX_LEVEL + 1];
+
+   static {
+      for (int level = 1; level <= MAX_LEVEL; level++)
+         FALL_INTERVALS[level] = Math.max(1, Math.round(1e9
+               * StrictMath.pow(0.8 - (level - 1) * 0.007, level - 1)));
+   }
+
+   // Data fields: instance variables
+   // --------------------------------------------------------------------------
+   private long fallLag; // the time of the game not yet used for falling
+   private long groundTime; // the time the tetromino has been on the ground
+   private int lockResets; // the number of lock delay resets of the tetromino
+
+   // Methods
+   // --------------------------------------------------------------------------
+   // A constructor for creating a scheduler for a new game
+   public GravityScheduler() {
+      reset();
+   }
+
+   // A method that sets the scheduler back to its state at the start of a game
+   public void reset() {
+      // the first tetromino falls in the first tick
+      fallLag = FALL_INTERVALS[1];
+      groundTime = 0;
+      lockResets = 0;
+   }
+
+   // A method that returns the level for the rows cleared and the tiles merged
+   // on the given game grid
+   public int getLevel(GameGrid grid) {
+      long lines = grid.getClearedRowCount() + grid.getMergeCount() / MERGES_PER_LINE;
+      return (int) Math.min(MAX_LEVEL, 1 + lines / LINES_PER_LEVEL);
+   }
+
+   // A method that returns the fall interval of the given level in nanoseconds
+   public static long getFallInterval(int level) {
+      return FALL_INTERVALS[Math.max(1, Math.min(MAX_LEVEL, level))];
+   }
+
+   // A method that returns the number of times the tetromino falls in the
+   // next tick at the given level (the falls due at the start of the tick, at
+   // most the given number, e.g., the height of the game grid) and moves the
+   // clock of the game to the end of the tick
+   public int takeFalls(int level, int maxFalls) {
+      long interval = getFallInterval(level);
+      int falls = 0;
+      if (fallLag >= interval) {
+         falls = (int) Math.min(maxFalls, fallLag / interval);
+         fallLag %= interval;
+      }
+      fallLag += GameEngine.TICK_NANOS;
+      return falls;
+   }
+
+   // A method that updates the time the tetromino has been on the ground after
+   // a tick and returns whether it must be locked now
+   public boolean updateLock(boolean onGround) {
+      if (!onGround) {
+         groundTime = 0;
+         return false;
+      }
+      groundTime += GameEngine.TICK_NANOS;
+      return groundTime >= LOCK_DELAY_NANOS;
+   }
+
+   // A method that starts the lock delay again after the tetromino has been
+   // moved or rotated on the ground (at most MAX_LOCK_RESETS times)
+   public void resetLock() {
+      if (groundTime > 0 && lockResets < MAX_LOCK_RESETS) {
+         groundTime = 0;
+         lockResets++;
+      }
+   }
+
+   // A method for starting the lock delay of a new tetromino
+   public void startTetromino() {
+      groundTime = 0;
+      lockResets = 0;
+   }
+
+   // A method for writing the state of the scheduler to the given buffer
+   public void writeTo(ByteBuffer out) {
+      out.putLong(fallLag);
+      out.putLong(groundTime);
+      out.put((byte) lockResets);
+   }
+
+   // A method for reading the state written by writeTo from the given buffer
+   public void readFrom(ByteBuffer in) {
+      fallLag = in.getLong();
+      groundTime = in.getLong();
+      lockResets = in.get();
+   }
+}
@@ -0,0 +1,127 @@
+import java.io.PrintStream;
+import java.util.Arrays;
+
+// A class used for modeling a histogram of non-negative values (e.g., the scores
+// of many games) with a fixed number of buckets. The values below 2^SUB_BITS
+// have their own buckets, and each larger range [2^k, 2^(k+1)) is split into
+// 2^SUB_BITS buckets of the same width, so the percentiles are accurate within
+// about 1.5% while the histogram takes a few kilobytes for any range of values.
+// Histograms recorded in different threads can be added up at the end.
+public class Histogram {
+   // Data fields: class variables
+   // --------------------------------------------------------------------------
+   private static final int SUB_BITS = 6; // 64 buckets for each power of 2
+   private static final int SUB_COUNT = 1 << SUB_BITS;
+   private static final int BUCKET_COUNT = (64 - SUB_BITS + 1) * SUB_COUNT;
+   private static final int BAR_LENGTH = 50; // the length of the longest bar
+
+   // Data fields: instance variables
+   // --------------------------------------------------------------------------
+   private long[] counts = new long[BUCKET_COUNT];
+   private long count, sum; // the number and the sum of the recorded values
+   private long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+
+   // Methods
+   // --------------------------------------------------------------------------
+   // A method for recording the given value (negative values count as 0)
+   public void record(long value) {
+      value = Math.max(0, value);
+      counts[bucketOf(value)]++;
+      count++;
+      sum += value;
+      min = Math.min(min, value);
+      max = Math.max(max, value);
+   }
+
+   // A method for removing all the recorded values
+   public void clear() {
+      Arrays.fill(counts, 0);
+      count = 0;
+      sum = 0;
+      min = Long.MAX_VALUE;
+      max = Long.MIN_VALUE;
+   }
+
+   // A method for adding the values recorded in the given histogram to this one
+   public void add(Histogram other) {
+      for (int i = 0; i < BUCKET_COUNT; i++)
+         counts[i] += other.counts[i];
+      count += other.count;
+      sum += other.sum;
+      min = Math.min(min, other.min);
+      max = Math.max(max, other.max);
+   }
+
+   // A method that returns the index of the bucket for the given value
+   private static int bucketOf(long value) {
+      if (value < SUB_COUNT)
+         return (int) value;
+      int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+      return (shift + 1) * SUB_COUNT + (int) ((value >>> shift) - SUB_COUNT);
+   }
+
+   // A method that returns the smallest value in the bucket with the given index
+   private static long lowestValueOf(int bucket) {
+      if (bucket < SUB_COUNT)
+         return bucket;
+      int shift = bucket / SUB_COUNT - 1;
+      return (long) (bucket % SUB_COUNT + SUB_COUNT) << shift;
+   }
+
+   // A method that returns the given percentile (0 to 100) of the recorded
+   // values as the smallest value of the bucket it falls into (0 if empty)
+   public long getPercentile(double percentile) {
+      if (count == 0)
+         return 0;
+      long rank = (long) Math.ceil(percentile / 100 * count);
+      long seen = 0;
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+         seen += counts[i];
+         if (seen >= Math.max(1, rank))
+            return Math.max(min, Math.min(max, lowestValueOf(i)));
+      }
+      return max;
+   }
+
+   // Getter methods
+   // --------------------------------------------------------------------------
+   public long getCount() {
+      return count;
+   }
+
+   public double getMean() {
+      return count == 0 ? 0 : (double) sum / count;
+   }
+
+   public long getMin() {
+      return count == 0 ? 0 : min;
+   }
+
+   public long getMax() {
+      return count == 0 ? 0 : max;
+   }
+
+   // A method for printing the summary of the recorded values with the given
+   // name and a text chart of the distribution in the given number of rows
+   public void print(PrintStream out, String name, int rows) {
+      out.printf("%s: n=%d mean=%.1f min=%d p50=%d p90=%d p99=%d p99.9=%d max=%d%n",
+            name, count, getMean(), getMin(), getPercentile(50), getPercentile(90),
+            getPercentile(99), getPercentile(99.9), getMax());
+      if (count == 0)
+         return;
+      // merge the buckets into the given number of rows of the same width
+      long low = getMin(), width = Math.max(1, (getMax() - low) / rows + 1);
+      long[] rowCounts = new long[rows];
+      for (int i = 0; i < BUCKET_COUNT; i++)
+         if (counts[i] != 0)
+            rowCounts[(int) ((Math.max(low, lowestValueOf(i)) - low) / width)] += counts[i];
+      long largest = 1;
+      for (long rowCount : rowCounts)
+         largest = Math.max(largest, rowCount);
+      for (int r = 0; r < rows; r++) {
+         int bar = (int) (rowCounts[r] * BAR_LENGTH / largest);
+         out.printf("  %10d | %-" + BAR_LENGTH + "s %d%n", low + r * width,
+               "#".repeat(bar), rowCounts[r]);
+      }
+   }
+}
@@ -0,0 +1,109 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// A class used for modeling a lock-free queue of input events (encoded as long
+// values, each with the System.nanoTime of the event) from a single producer
+// thread (the AWT event dispatch thread) to a
+// single consumer thread (the game loop). The events are stored in a ring
+// buffer whose size is a power of 2 (and their times in a parallel one). The producer publishes each event by
+// writing the tail index, and the consumer frees its slot by writing the head
+// index, so neither thread ever takes a lock. The consumer can wait for the
+// next event without spinning: it parks itself and the producer unparks it
+// after publishing an event.
+public class InputQueue {
+   // data fields
+   private final long[] events; // the ring buffer of the events
+   private final long[] times; // the times of the events in the same slots
+   private final int mask; // the size of the ring buffer minus 1
+   // the index of the next event to read and the index of the next free slot
+   // (they only grow, the slot of an index is index & mask)
+   private final AtomicLong head = new AtomicLong(), tail = new AtomicLong();
+   // the thread that waits for the next event (null if none)
+   private volatile Thread waitingThread;
+   private long droppedCount; // the number of events dropped as the queue was full
+   private long polledTime; // the time of the last event read by the consumer
+
+   // A constructor for creating a queue that can hold at least the given number
+   // of events
+   public InputQueue(int capacity) {
+      int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+      events = new long[size];
+      times = new long[size];
+      mask = size - 1;
+   }
+
+   // A method for adding the given event that happened at the given time to
+   // the queue (only by the producer thread) that returns false if the queue
+   // is full and the event is dropped
+   public boolean offer(long event, long time) {
+      long currentTail = tail.get();
+      if (currentTail - head.get() == events.length) {
+         droppedCount++;
+         return false;
+      }
+      events[(int) currentTail & mask] = event;
+      times[(int) currentTail & mask] = time;
+      // publish the event (a volatile write, so that the read below cannot see
+      // an old value while the consumer misses the event and parks)
+      tail.set(currentTail + 1);
+      Thread thread = waitingThread;
+      if (thread != null)
+         LockSupport.unpark(thread);
+      return true;
+   }
+
+   // A method that returns whether there is no event to read
+   public boolean isEmpty() {
+      return head.get() == tail.get();
+   }
+
+   // A method that removes and returns the next event (only by the consumer
+   // thread), or returns the given default value if the queue is empty (the
+   // time of the event is given by getPolledTime)
+   public long poll(long defaultValue) {
+      long currentHead = head.get();
+      if (currentHead == tail.get())
+         return defaultValue;
+      long event = events[(int) currentHead & mask];
+      polledTime = times[(int) currentHead & mask];
+      head.lazySet(currentHead + 1); // free the slot for the producer
+      return event;
+   }
+
+   // A method that removes all the events in the queue (only by the consumer
+   // thread)
+   public void clear() {
+      head.lazySet(tail.get());
+   }
+
+   // A method that waits (without using the CPU) until there is an event to
+   // read or until System.nanoTime reaches the given deadline (Long.MAX_VALUE
+   // for no deadline)
+   public void await(long deadlineNanos) {
+      waitingThread = Thread.currentThread();
+      try {
+         while (isEmpty()) {
+            if (deadlineNanos == Long.MAX_VALUE)
+               LockSupport.park(this);
+            else {
+               long remaining = deadlineNanos - System.nanoTime();
+               if (remaining <= 0)
+                  break;
+               LockSupport.parkNanos(this, remaining);
+            }
+         }
+      } finally {
+         waitingThread = null;
+      }
+   }
+
+   // A getter method for the time of the last event returned by poll
+   public long getPolledTime() {
+      return polledTime;
+   }
+
+   // A getter method for the number of events dropped as the queue was full
+   public long getDroppedCount() {
+      return droppedCount;
+   }
+}
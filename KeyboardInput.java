@@ -0,0 +1,237 @@
+import java.awt.KeyEventDispatcher;
+import java.awt.KeyboardFocusManager;
+import java.awt.event.KeyEvent;
+import java.util.Arrays;
+
+// A class used for turning the keys pressed and released by the user into the
+// actions of the game. The key events are taken from AWT (before they reach
+// StdDraw) as soon as they happen and put into an InputQueue, so no key press
+// is missed however long a frame takes, and the game loop reads all of them at
+// once. Holding the left or the right arrow key moves the tetromino once, and
+// after a delay (DAS, delayed auto shift) moves it again repeatedly at a fixed
+// rate (ARR, auto repeat rate). Holding the down arrow key moves it down at a
+// fixed rate. The repeats are timed by the clock, not by the frames, and the
+// automatic repeats of the operating system are ignored.
+public class KeyboardInput implements KeyEventDispatcher {
+   // Data fields: class variables
+   // --------------------------------------------------------------------------
+   // the default delay before the repeats and the default repeat intervals
+   public static final long DEFAULT_DAS_NANOS = 170_000_000L; // 170 ms
+   public static final long DEFAULT_ARR_NANOS = 50_000_000L; // 50 ms
+   public static final long DEFAULT_SOFT_DROP_NANOS = 50_000_000L; // 50 ms
+   // the bits of an event in the queue: the key code and whether the key has
+   // been pressed (or released) (the time of the event is kept by the queue)
+   private static final int KEY_BITS = 16;
+   private static final long PRESSED_BIT = 1L << KEY_BITS;
+
+   // Data fields: instance variables
+   // --------------------------------------------------------------------------
+   private InputQueue queue = new InputQueue(256);
+   private long dasNanos, arrNanos, softDropNanos; // the timing of the repeats
+   // the keys being held (by their key codes, read only by the game loop)
+   private boolean[] isHeld = new boolean[1 << KEY_BITS];
+   // the direction that is repeated (the last pressed of left and right, or
+   // NONE) and the time of its next repeat
+   private Action shiftAction = Action.NONE;
+   private long nextShiftTime, nextDropTime;
+   // whether the pause key and the profiler key have been pressed since the
+   // last time they were read
+   private boolean pausePressed, overlayKeyPressed;
+
+   // Methods
+   // --------------------------------------------------------------------------
+   // A constructor for creating the keyboard input with the default timing
+   public KeyboardInput() {
+      this(DEFAULT_DAS_NANOS, DEFAULT_ARR_NANOS, DEFAULT_SOFT_DROP_NANOS);
+   }
+
+   // A constructor for creating the keyboard input with the given delay before
+   // the repeats and the given intervals of the sideways and downward repeats
+   public KeyboardInput(long dasNanos, long arrNanos, long softDropNanos) {
+      this.dasNanos = dasNanos;
+      this.arrNanos = Math.max(1, arrNanos);
+      this.softDropNanos = Math.max(1, softDropNanos);
+   }
+
+   // A method for starting to receive the key events of the application (the
+   // events and the held keys left from a previous game are forgotten, e.g., a
+   // key released while the events were not received)
+   public void install() {
+      reset();
+      KeyboardFocusManager.getCurrentKeyboardFocusManager().addKeyEventDispatcher(this);
+   }
+
+   // A method for stopping to receive the key events of the application
+   public void uninstall() {
+      KeyboardFocusManager.getCurrentKeyboardFocusManager().removeKeyEventDispatcher(this);
+   }
+
+   // A method that empties the queue and clears the held keys, the repeats and
+   // the pressed pause and profiler keys (only while the events are not
+   // received, e.g., between two games)
+   public void reset() {
+      queue.clear();
+      Arrays.fill(isHeld, false);
+      shiftAction = Action.NONE;
+      nextShiftTime = nextDropTime = 0;
+      pausePressed = overlayKeyPressed = false;
+   }
+
+   // A method called by AWT (on the event dispatch thread) for each key event
+   // that puts the presses and releases of the keys into the queue. It returns
+   // false, so the event still reaches StdDraw.
+   @Override
+   public boolean dispatchKeyEvent(KeyEvent e) {
+      int keyCode = e.getKeyCode();
+      if (keyCode <= 0 || keyCode >= 1 << KEY_BITS)
+         return false;
+      if (e.getID() == KeyEvent.KEY_PRESSED)
+         enqueue(keyCode, true, System.nanoTime());
+      else if (e.getID() == KeyEvent.KEY_RELEASED)
+         enqueue(keyCode, false, System.nanoTime());
+      return false;
+   }
+
+   // A method for putting a key event into the queue (also used for feeding
+   // the input without AWT)
+   public void enqueue(int keyCode, boolean pressed, long time) {
+      queue.offer((pressed ? PRESSED_BIT : 0) | keyCode, time);
+   }
+
+   // A method that reads all the key events up to the given time and puts the
+   // resulting actions (including the repeats that are due) into the given
+   // array in order, and returns the number of them (the actions that do not
+   // fit into the array are dropped)
+   public int poll(long now, Action[] actions) {
+      int count = 0;
+      long event;
+      while ((event = queue.poll(-1)) != -1) {
+         long time = queue.getPolledTime();
+         int keyCode = (int) (event & (PRESSED_BIT - 1));
+         boolean pressed = (event & PRESSED_BIT) != 0;
+         // the repeats that were due before the event come first
+         count = addRepeats(time, actions, count);
+         boolean wasHeld = isHeld[keyCode];
+         isHeld[keyCode] = pressed;
+         if (pressed && !wasHeld)
+            count = press(keyCode, time, actions, count);
+         else if (!pressed && wasHeld)
+            release(keyCode, time);
+      }
+      return addRepeats(now, actions, count);
+   }
+
+   // A method for handling the press of the given key at the given time
+   private int press(int keyCode, long time, Action[] actions, int count) {
+      switch (keyCode) {
+         case KeyEvent.VK_LEFT:
+            return startShift(Action.LEFT, time, actions, count);
+         case KeyEvent.VK_RIGHT:
+            return startShift(Action.RIGHT, time, actions, count);
+         case KeyEvent.VK_DOWN:
+            nextDropTime = time + softDropNanos;
+            return add(Action.DOWN, actions, count);
+         case KeyEvent.VK_D:
+            return add(Action.ROTATE_COUNTERCLOCKWISE, actions, count);
+         case KeyEvent.VK_A:
+            return add(Action.ROTATE_CLOCKWISE, actions, count);
+         case KeyEvent.VK_SPACE:
+            return add(Action.HARD_DROP, actions, count);
+         case KeyEvent.VK_P:
+            pausePressed = true;
+            return count;
+         case KeyEvent.VK_F:
+            overlayKeyPressed = true;
+            return count;
+         default:
+            return count;
+      }
+   }
+
+   // A method for handling the release of the given key at the given time
+   private void release(int keyCode, long time) {
+      switch (keyCode) {
+         case KeyEvent.VK_LEFT:
+            // keep repeating the other direction if it is still held
+            if (shiftAction == Action.LEFT)
+               continueShift(isHeld[KeyEvent.VK_RIGHT] ? Action.RIGHT : Action.NONE, time);
+            break;
+         case KeyEvent.VK_RIGHT:
+            if (shiftAction == Action.RIGHT)
+               continueShift(isHeld[KeyEvent.VK_LEFT] ? Action.LEFT : Action.NONE, time);
+            break;
+         default:
+            break;
+      }
+   }
+
+   // A method that starts moving in the given direction: once now and after
+   // the delay repeatedly
+   private int startShift(Action action, long time, Action[] actions, int count) {
+      shiftAction = action;
+      nextShiftTime = time + dasNanos;
+      return add(action, actions, count);
+   }
+
+   // A method that makes the given direction (still held) the repeated one
+   // after the other direction is released
+   private void continueShift(Action action, long time) {
+      shiftAction = action;
+      nextShiftTime = time + dasNanos;
+   }
+
+   // A method that adds the repeats of the held keys that are due at the given
+   // time to the actions
+   private int addRepeats(long time, Action[] actions, int count) {
+      while (shiftAction != Action.NONE && nextShiftTime <= time) {
+         count = add(shiftAction, actions, count);
+         nextShiftTime += arrNanos;
+      }
+      while (isHeld[KeyEvent.VK_DOWN] && nextDropTime <= time) {
+         count = add(Action.DOWN, actions, count);
+         nextDropTime += softDropNanos;
+      }
+      return count;
+   }
+
+   // A method that adds the given action to the actions if there is room
+   private static int add(Action action, Action[] actions, int count) {
+      if (count < actions.length)
+         actions[count++] = action;
+      return count;
+   }
+
+   // A method that returns the time of the next repeat of a held key (or
+   // Long.MAX_VALUE if no key is repeated)
+   public long getNextRepeatTime() {
+      long time = Long.MAX_VALUE;
+      if (shiftAction != Action.NONE)
+         time = nextShiftTime;
+      if (isHeld[KeyEvent.VK_DOWN])
+         time = Math.min(time, nextDropTime);
+      return time;
+   }
+
+   // A method that waits (without using the CPU) until a key event arrives or
+   // until System.nanoTime reaches the given deadline (Long.MAX_VALUE for no
+   // deadline)
+   public void await(long deadlineNanos) {
+      queue.await(deadlineNanos);
+   }
+
+   // A method that returns whether the pause key has been pressed since the
+   // last call (and clears it)
+   public boolean takePausePressed() {
+      boolean pressed = pausePressed;
+      pausePressed = false;
+      return pressed;
+   }
+
+   // A method that returns whether the profiler key has been pressed since the
+   // last call (and clears it)
+   public boolean takeOverlayKeyPressed() {
+      boolean pressed = overlayKeyPressed;
+      overlayKeyPressed = false;
+      return pressed;
+   }
+}
@@ -0,0 +1,64 @@
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.awt.event.AWTEventListener;
+import java.awt.event.MouseEvent;
+
+// A class used for waiting for the mouse clicks in the menus without using the
+// CPU, instead of checking StdDraw.isMousePressed again and again. It listens
+// to the mouse events of the whole application and wakes up the waiting thread
+// (with wait/notify) when the mouse button is pressed. The waiting thread is
+// woken up after StdDraw has handled the same event, so StdDraw.mouseX and
+// StdDraw.mouseY give the position of the click.
+public class MouseClicks implements AWTEventListener {
+   // the only instance (created when it is first used)
+   private static MouseClicks instance;
+   // the number of the clicks so far (guarded by this object)
+   private long clickCount;
+
+   // A method that returns the only instance and starts listening to the mouse
+   // events when it is called for the first time
+   public static synchronized MouseClicks getInstance() {
+      if (instance == null) {
+         instance = new MouseClicks();
+         Toolkit.getDefaultToolkit().addAWTEventListener(instance, AWTEvent.MOUSE_EVENT_MASK);
+      }
+      return instance;
+   }
+
+   // A method called by AWT (on the event dispatch thread) for each mouse event
+   @Override
+   public void eventDispatched(AWTEvent e) {
+      // count the click after the event reaches StdDraw (the events posted to
+      // the event queue run after the current one)
+      if (e.getID() == MouseEvent.MOUSE_PRESSED)
+         EventQueue.invokeLater(this::click);
+   }
+
+   // A method for counting a click and waking up the waiting threads
+   private synchronized void click() {
+      clickCount++;
+      notifyAll();
+   }
+
+   // A getter method for the number of the clicks so far
+   public synchronized long getClickCount() {
+      return clickCount;
+   }
+
+   // A method that waits until there are more clicks than the given number of
+   // clicks (read by getClickCount before) and returns the new number of them
+   public synchronized long awaitClick(long seenCount) {
+      boolean interrupted = false;
+      while (clickCount == seenCount) {
+         try {
+            wait();
+         } catch (InterruptedException e) {
+            interrupted = true; // keep waiting, but keep the interrupt status
+         }
+      }
+      if (interrupted)
+         Thread.currentThread().interrupt();
+      return clickCount;
+   }
+}
@@ -0,0 +1,40 @@
+// An interface used for modeling the ways of deciding where to place each
+// tetromino when games are played without a user (e.g., by the batch simulator)
+public interface PlacementPolicy {
+   // A method that puts the current tetromino of the given game in the rotation
+   // and the column where it will be dropped by using the given random number
+   // generator (a stream of its own, not the one of the game, so the game
+   // gives the same tetrominoes for the same seed with any policy)
+   void placeTetromino(GameEngine engine, GameRandom random);
+
+   // A method that creates the policy with the given name: "random" places each
+   // tetromino in a random rotation and column, "greedy" places it where the
+   // resulting game grid is the best and "bot" also tries the next tetromino
+   static PlacementPolicy create(String name) {
+      switch (name.toLowerCase()) {
+         case "random":
+            return PlacementPolicy::placeRandomly;
+         case "greedy":
+            return new AutoPlayer(1, false, null);
+         case "bot":
+            return new AutoPlayer(8, true, null);
+         default:
+            throw new IllegalArgumentException("Invalid placement policy: " + name);
+      }
+   }
+
+   // A method that puts the current tetromino of the given game in a random
+   // rotation and in a random column where all of its cells are in the grid
+   static void placeRandomly(GameEngine engine, GameRandom random) {
+      Tetromino tetromino = engine.getCurrentTetromino();
+      int rotation = random.nextInt(4);
+      // the columns of the leftmost and the rightmost cells in the rotation
+      long columns = 0;
+      for (long mask : tetromino.getRowMasks(rotation))
+         columns |= mask;
+      int minCol = Long.numberOfTrailingZeros(columns);
+      int maxCol = 63 - Long.numberOfLeadingZeros(columns);
+      int gridWidth = engine.getGrid().getGridWidth();
+      engine.place(rotation, random.nextInt(gridWidth - maxCol + minCol) - minCol);
+   }
+}
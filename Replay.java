@@ -0,0 +1,326 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// A class used for modeling the replay of a game: the seed of the game and the
+// action applied in each tick (and the actions of the keys applied between the
+// ticks and the placements of the bot, if any). As the
+// game engine gives the same game for the same seed and the same actions, this
+// is enough for playing the whole game again, with or without a display. The
+// score, the tick count and a hash of the game grid at the end of the game are
+// also kept for checking that the replayed game ends the same.
+//
+// The actions are stored as runs of the same action, so a run of ticks without
+// any key pressed takes a few bytes however long it is. Each run starts with a
+// byte whose low 3 bits are the code of the action (the ordinal of Action) and
+// whose high 5 bits are the length of the run minus 1. The length 31 means
+// that the length minus 32 follows as a variable-length integer. The code
+// EVENT_CODE is for the events between two ticks: it is followed by the
+// rotation and the column of a placement (as a zigzag variable-length integer,
+// as the column can be negative or larger than a byte), or by APPLY_CODE plus
+// the ordinal of an action applied without a tick (GameEngine.apply).
+public class Replay {
+   // Data fields: class variables
+   // --------------------------------------------------------------------------
+   private static final int MAGIC = 0x54325250; // "T2RP"
+   private static final int VERSION = 1; // the version of the format
+   private static final int EVENT_CODE = 7; // not used by any action
+   private static final int APPLY_CODE = 0x10; // larger than any rotation
+   private static final int LONG_RUN = 31; // a run whose length follows
+   private static final Action[] ACTIONS = Action.values();
+
+   // Data fields: instance variables
+   // --------------------------------------------------------------------------
+   private int gridHeight, gridWidth; // the size of the game grid
+   private long seed; // the seed of the random number generator of the game
+   private boolean useBag; // whether the types come from a 7-bag generator
+   private byte[] events; // the encoded runs of the actions and the other events
+   // the state of the game at the end of the recording
+   private long tickCount, score, boardHash;
+
+   // Methods
+   // --------------------------------------------------------------------------
+   // A constructor for creating a replay with the given values (used by the
+   // recorder and by the read method)
+   private Replay(int gridHeight, int gridWidth, long seed, boolean useBag, byte[] events,
+         long tickCount, long score, long boardHash) {
+      this.gridHeight = gridHeight;
+      this.gridWidth = gridWidth;
+      this.seed = seed;
+      this.useBag = useBag;
+      this.events = events;
+      this.tickCount = tickCount;
+      this.score = score;
+      this.boardHash = boardHash;
+   }
+
+   // A method that creates a new game with the same size, seed and rules as
+   // the recorded game
+   public GameEngine createEngine() {
+      return new GameEngine(gridHeight, gridWidth, new GameRandom(seed), useBag);
+   }
+
+   // A method that plays the recorded game again without a display as fast as
+   // possible and returns the game at the end of it
+   public GameEngine playHeadless() {
+      GameEngine engine = createEngine();
+      Player player = new Player();
+      while (!engine.isGameOver() && player.hasNext())
+         engine.step(player.nextAction(engine));
+      // apply the events recorded after the last tick (e.g., a hard drop that
+      // ends the game)
+      if (!engine.isGameOver())
+         player.nextAction(engine);
+      return engine;
+   }
+
+   // A method that returns whether the given game ends as the recorded one (the
+   // same number of ticks, score and game grid)
+   public boolean matches(GameEngine engine) {
+      return engine.getTickCount() == tickCount && engine.getScore() == score
+            && engine.getGrid().getBoardHash() == boardHash;
+   }
+
+   // A method for writing the replay to the given file
+   public void write(File file) throws IOException {
+      try (DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(file)))) {
+         out.writeInt(MAGIC);
+         out.writeByte(VERSION);
+         out.writeShort(gridHeight);
+         out.writeShort(gridWidth);
+         out.writeLong(seed);
+         out.writeBoolean(useBag);
+         out.writeLong(tickCount);
+         out.writeLong(score);
+         out.writeLong(boardHash);
+         out.writeInt(events.length);
+         out.write(events);
+      }
+   }
+
+   // A method for reading the replay in the given file
+   public static Replay read(File file) throws IOException {
+      try (DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(file)))) {
+         if (in.readInt() != MAGIC)
+            throw new IOException("Not a replay file: " + file);
+         int version = in.readUnsignedByte();
+         if (version != VERSION)
+            throw new IOException("Unsupported replay version " + version + ": " + file);
+         int gridHeight = in.readUnsignedShort(), gridWidth = in.readUnsignedShort();
+         long seed = in.readLong();
+         boolean useBag = in.readBoolean();
+         long tickCount = in.readLong(), score = in.readLong(), boardHash = in.readLong();
+         byte[] events = new byte[in.readInt()];
+         in.readFully(events);
+         return new Replay(gridHeight, gridWidth, seed, useBag, events, tickCount, score,
+               boardHash);
+      }
+   }
+
+   // Getter methods
+   // --------------------------------------------------------------------------
+   public long getSeed() {
+      return seed;
+   }
+
+   public long getTickCount() {
+      return tickCount;
+   }
+
+   public long getScore() {
+      return score;
+   }
+
+   public int getEventByteCount() {
+      return events.length;
+   }
+
+   // A class used for recording the actions of a game (from its start) as a
+   // replay
+   public static class Recorder {
+      private int gridHeight, gridWidth;
+      private long seed;
+      private boolean useBag;
+      private ByteArrayOutputStream events = new ByteArrayOutputStream();
+      // the action of the current run and the length of the run
+      private Action runAction;
+      private long runLength;
+
+      // A constructor for creating a recorder for a new game with the given
+      // size, seed and type generator (as given to the GameEngine constructor)
+      public Recorder(int gridH, int gridW, long seed, boolean useBag) {
+         gridHeight = gridH;
+         gridWidth = gridW;
+         this.seed = seed;
+         this.useBag = useBag;
+      }
+
+      // A method for recording the action applied in a tick (GameEngine.step)
+      public void recordStep(Action action) {
+         if (action != runAction) {
+            flushRun();
+            runAction = action;
+         }
+         runLength++;
+      }
+
+      // A method for recording a placement of the tetromino (GameEngine.place)
+      public void recordPlacement(int rotation, int col) {
+         flushRun();
+         events.write(EVENT_CODE);
+         events.write(rotation);
+         // zigzag: 0, -1, 1, -2, ... are written as 0, 1, 2, 3, ...
+         writeVarint((col << 1) ^ (col >> 31));
+      }
+
+      // A method for recording an action applied between two ticks, as soon as
+      // its key is pressed (GameEngine.apply)
+      public void recordApply(Action action) {
+         flushRun();
+         events.write(EVENT_CODE);
+         events.write(APPLY_CODE + action.ordinal());
+      }
+
+      // A method for writing the current run of actions to the events
+      private void flushRun() {
+         if (runLength == 0)
+            return;
+         long extra = runLength - 1;
+         events.write(runAction.ordinal() | (int) Math.min(extra, LONG_RUN) << 3);
+         // write the rest of the length
+         if (extra >= LONG_RUN)
+            writeVarint(extra - LONG_RUN);
+         runLength = 0;
+      }
+
+      // A method for writing the given non-negative value to the events as a
+      // variable-length integer (7 bits at a time, the lowest bits first)
+      private void writeVarint(long value) {
+         for (; value >= 0x80; value >>>= 7)
+            events.write((int) (value & 0x7F) | 0x80);
+         events.write((int) value);
+      }
+
+      // A method that finishes the recording of the given game and returns the
+      // replay of it
+      public Replay finish(GameEngine engine) {
+         flushRun();
+         return new Replay(gridHeight, gridWidth, seed, useBag, events.toByteArray(),
+               engine.getTickCount(), engine.getScore(), engine.getGrid().getBoardHash());
+      }
+   }
+
+   // A method that returns a new player for the recorded actions
+   public Player player() {
+      return new Player();
+   }
+
+   // A class used for reading the recorded actions back one tick at a time
+   public class Player {
+      private int position; // the position of the next run in the events
+      private Action runAction; // the action of the current run
+      private long runLeft; // the number of ticks left in the current run
+
+      // A method that returns whether there are more ticks recorded (the
+      // events recorded after the last tick are not counted as ticks)
+      public boolean hasNext() {
+         if (runLeft > 0)
+            return true;
+         int next = position;
+         while (next < events.length && (events[next] & 7) == EVENT_CODE) {
+            next += 2;
+            // skip the column of a placement
+            if (events[next - 1] < APPLY_CODE)
+               while (events[next++] < 0)
+                  ;
+         }
+         return next < events.length;
+      }
+
+      // A method that applies the placements and the actions recorded before
+      // the next tick to the given game and returns the action of the next
+      // tick (NONE when no more ticks are recorded)
+      public Action nextAction(GameEngine engine) {
+         while (runLeft == 0) {
+            if (position >= events.length)
+               return Action.NONE;
+            int code = events[position] & 7, extra = (events[position++] & 0xFF) >>> 3;
+            if (code == EVENT_CODE) {
+               int value = events[position++];
+               if (value >= APPLY_CODE) {
+                  if (!engine.isGameOver())
+                     engine.apply(ACTIONS[value - APPLY_CODE]);
+               } else {
+                  int zigzag = (int) readVarint();
+                  engine.place(value, (zigzag >>> 1) ^ -(zigzag & 1));
+               }
+               continue;
+            }
+            long length = extra + 1;
+            if (extra == LONG_RUN)
+               length += readVarint();
+            runAction = ACTIONS[code];
+            runLeft = length;
+         }
+         runLeft--;
+         return runAction;
+      }
+
+      // A method that reads a variable-length integer written by
+      // Recorder.writeVarint from the events
+      private long readVarint() {
+         long value = 0;
+         int shift = 0, b;
+         do {
+            b = events[position++] & 0xFF;
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+         } while (b >= 0x80);
+         return value;
+      }
+   }
+
+   // The main method for checking the given replay files (or the replay files
+   // in the given directories) by playing them again as fast as possible
+   public static void main(String[] args) throws IOException {
+      List<File> files = new ArrayList<>();
+      for (String arg : args) {
+         File file = new File(arg);
+         File[] children = file.listFiles((dir, name) -> name.endsWith(".replay"));
+         if (children != null) {
+            Arrays.sort(children);
+            files.addAll(Arrays.asList(children));
+         } else
+            files.add(file);
+      }
+      int failures = 0;
+      long startTime = System.nanoTime(), totalTicks = 0;
+      for (File file : files) {
+         Replay replay = read(file);
+         GameEngine engine = replay.playHeadless();
+         totalTicks += engine.getTickCount();
+         if (!replay.matches(engine)) {
+            failures++;
+            System.out.printf("FAIL %s: ticks %d/%d, score %d/%d%n", file,
+                  engine.getTickCount(), replay.getTickCount(), engine.getScore(),
+                  replay.getScore());
+         }
+      }
+      double seconds = (System.nanoTime() - startTime) / 1e9;
+      System.out.printf("%d replays, %d failed, %d ticks in %.2f s%n", files.size(),
+            failures, totalTicks, seconds);
+      if (failures > 0)
+         System.exit(1);
+   }
+}
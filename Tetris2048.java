@@ -1,130 +1,65 @@
 import java.awt.Color; // the color type used in StdDraw
 import java.awt.Font; // the font type used in StdDraw
-import java.awt.event.KeyEvent; // for the key codes used in StdDraw
-import java.util.Random;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
 
 // The main class to run the Tetris 2048 game
 public class Tetris2048 {
-
    public static void main(String[] args) {
-	  boolean gamePaused = false; // Add this flag for game pause status
-      // set the size of the game grid
-      int gridH = 12, gridW = 8;
-      // set the size of the drawing canvas
-      int canvasH = 80 * gridH, canvasW = 80 * gridW + gridW/3 * 80;
-      StdDraw.setCanvasSize(canvasW, canvasH);
-      // set the scale of the coordinate system
-      StdDraw.setXscale(-0.5, gridW + ((double) gridW / 3) - 0.5);
-      StdDraw.setYscale(-0.5, gridH - 0.5);
-      // double buffering enables computer animations, creating an illusion of
-      // motion by repeating four steps: clear, draw, show and pause
-      StdDraw.enableDoubleBuffering();
-
-      // set the dimension values stored and used in the Tetromino class
-      Tetromino.gridHeight = gridH;
-      Tetromino.gridWidth = gridW;
-
-      // create the game grid
-      GameGrid grid = new GameGrid(gridH, gridW);
-      // create the first tetromino to enter the game grid
-      // by using the createTetromino method defined below
-      Tetromino currentTetromino = createTetromino();
-      grid.setCurrentTetromino(currentTetromino);
-
-      // display a simple menu before opening the game
-      // by using the displayGameMenu method defined below
-      displayGameMenu(gridH, gridW);
-      // display the how to play menu before starting the game
-      displayHowToPlayMenu(gridH, gridW);
-      // the main game loop (using some keyboard keys for moving the tetromino)
-      // -----------------------------------------------------------------------
-      int iterationCount = 0; // used for the speed of the game
-      while (true) {
-         // check user interactions via the keyboard
-         // --------------------------------------------------------------------
-         // if the left arrow key is being pressed
-         if (StdDraw.isKeyPressed(KeyEvent.VK_LEFT)) {
-            // move the active tetromino left by one
-            currentTetromino.move("left", grid);
-         // if the right arrow key is being pressed
-         }else if (StdDraw.isKeyPressed(KeyEvent.VK_RIGHT)) {
-            // move the active tetromino right by one
-            currentTetromino.move("right", grid);
-         // if the down arrow key is being pressed
-         }else if (StdDraw.isKeyPressed(KeyEvent.VK_DOWN)) {
-            // move the active tetromino down by one
-            currentTetromino.move("down", grid);
-            
-         }else if (StdDraw.isKeyPressed(KeyEvent.VK_D)) {
-            // move the active tetromino rotateCounterclockwise by one
-        	currentTetromino.rotateCounterclockwise(grid);
-         	StdDraw.pause(50);
-         
-         }else if (StdDraw.isKeyPressed(KeyEvent.VK_A)) {
-            // move the active tetromino rotateClockwise by one
-            currentTetromino.rotateClockwise(grid);
-         	StdDraw.pause(50);
+      // the games are run one after another by a session that uses the same
+      // game for all of them
+      GameSession session = new GameSession();
+      List<String> arguments = Arrays.asList(args);
+      // the games are played by the bot (the "bot" argument) and the types of
+      // the tetrominoes are taken from a 7-bag generator (the "bag" argument)
+      session.setBotMode(arguments.contains("bot"));
+      session.setBagMode(arguments.contains("bag"));
+      // turn the frame profiler on (before the FrameProfiler class is loaded)
+      if (arguments.contains("profile"))
+         System.setProperty("tetris.profile", "true");
+      long dasNanos = KeyboardInput.DEFAULT_DAS_NANOS, arrNanos = KeyboardInput.DEFAULT_ARR_NANOS;
+      for (String arg : args) {
+         // the seed of the first game for playing the same game again
+         // (otherwise taken from the clock)
+         if (arg.startsWith("seed="))
+            session.setFirstSeed(Long.parseLong(arg.substring("seed=".length())));
+         // the directory where each game is recorded as a replay file
+         if (arg.startsWith("record="))
+            session.setRecordDirectory(new File(arg.substring("record=".length())));
+         // the replay played instead of the keyboard in the first game
+         if (arg.startsWith("replay=")) {
+            try {
+               session.setReplay(Replay.read(new File(arg.substring("replay=".length()))));
+            } catch (IOException e) {
+               System.out.println("Cannot read the replay: " + e.getMessage());
+            }
          }
-         else if (StdDraw.isKeyPressed(KeyEvent.VK_P)) {
-        	 gamePaused = !gamePaused;
-             if (gamePaused) {
-                displayPauseMenu(gridH, gridW);
-                StdDraw.show();
-             }
-             StdDraw.pause(200);
-          }
-
-          // If the game is paused, don't process the game loop further
-          if (gamePaused) {
-             continue;
-          }
-          	StdDraw.pause(50);
-          
-         // move the active tetromino down by 1 once in 10 iterations (auto fall)
-         boolean success = true;
-         if (iterationCount % 10 == 0)
-            success = currentTetromino.move("down", grid);
-         iterationCount++;
-
-         // place the active tetromino on the grid when it cannot go down anymore
-         if (!success) {
-            // get the tile matrix of the tetromino without empty rows and columns
-            currentTetromino.createMinBoundedTileMatrix();
-            Tile[][] tiles = currentTetromino.getMinBoundedTileMatrix();
-            Point pos = currentTetromino.getMinBoundedTileMatrixPosition();
-            // update the game grid by locking the tiles of the landed tetromino
-            boolean gameOver = grid.updateGrid(tiles, pos);
-            // end the main game loop if the game is over
-            if (gameOver)
-               break;
-            // create the next tetromino to enter the game grid
-            // by using the createTetromino function defined below
-            currentTetromino = createTetromino();
-            grid.setCurrentTetromino(currentTetromino);
+         // the delay before a held left or right arrow key repeats and the
+         // interval of the repeats in milliseconds
+         if (arg.startsWith("das="))
+            dasNanos = Long.parseLong(arg.substring("das=".length())) * 1_000_000L;
+         if (arg.startsWith("arr="))
+            arrNanos = Long.parseLong(arg.substring("arr=".length())) * 1_000_000L;
+         // the file where the game is saved in the background
+         if (arg.startsWith("save="))
+            session.setSaveFile(Paths.get(arg.substring("save=".length())));
+         // the saved game that is resumed as the first game
+         if (arg.startsWith("resume=")) {
+            try {
+               session.setResumedEngine(GameSave.read(
+                     Paths.get(arg.substring("resume=".length()))).restore());
+            } catch (IOException | RuntimeException e) {
+               System.out.println("Cannot resume the saved game: " + e.getMessage());
+            }
          }
-
-         // display the game grid and the current tetromino
-         grid.display();
-
       }
-
-      // print a message on the console that the game is over
-      System.out.println("Game over!");
-      // Replace the "System.out.println("Game over!");" line with a call to displayGameOver
-      displayGameOver(gridH, gridW, grid);
-   }
-   
-
-   // A method for creating a random shaped tetromino to enter the game grid
-   public static Tetromino createTetromino() {
-      // the type (shape) of the tetromino is determined randomly
-      char[] tetrominoTypes = { 'I', 'O', 'Z' , 'J', 'L', 'S' , 'T' };
-      Random random = new Random();
-      int randomIndex = random.nextInt(tetrominoTypes.length);
-      char randomType = tetrominoTypes[randomIndex];
-      // create and return the tetromino
-      Tetromino tetromino = new Tetromino(randomType);
-      return tetromino;
+      session.setKeyRepeat(dasNanos, arrNanos);
+      session.run();
+      // close the window and end the program
+      System.exit(0);
    }
    
    public static void displayHowToPlayMenu(int gridHeight, int gridWidth) {
@@ -148,8 +83,9 @@ public class Tetris2048 {
 	      "1-)Use the left and right arrow keys to move the tetromino",
 	      "2-)Use the down arrow key to drop the tetromino faster",
 	      "3-)Use the 'A' and 'D' keys to rotate the tetromino",
-	      "4-)Complete a row to make it disappear and earn points",
-	      "5-)The game is over when the tetrominos reach the top of the grid"
+	      "4-)Use the space key to drop the tetromino where it will land",
+	      "5-)Complete a row to make it disappear and earn points",
+	      "6-)The game is over when the tetrominos reach the top of the grid"
 	   };
 	   double startY = gridHeight - 5;
 	   for (String instruction : instructions) {
@@ -165,21 +101,20 @@ public class Tetris2048 {
 	   StdDraw.setPenColor(textColor);
 	   StdDraw.text(buttonX, buttonY, "go to play");
 
+	   // display the menu once (it does not change until the button is clicked)
+	   MouseClicks mouseClicks = MouseClicks.getInstance();
+	   long clickCount = mouseClicks.getClickCount();
+	   StdDraw.show();
 	   // menu interaction loop
 	   while (true) {
-	      // display the menu and wait for a short time (50 ms)
-	      StdDraw.show();
-	      StdDraw.pause(50);
-
-	      // check if the mouse is being pressed on the button
-	      if (StdDraw.isMousePressed()) {
-	         // get the x and y coordinates of the position of the mouse
-	         double mouseX = StdDraw.mouseX(), mouseY = StdDraw.mouseY();
-	         // check if these coordinates are inside the button
-	         if (mouseX > buttonX - buttonW / 2 && mouseX < buttonX + buttonW / 2)
-	            if (mouseY > buttonY - buttonH / 2 && mouseY < buttonY + buttonH / 2)
-	               break; // break the loop to end the method and return to the main menu
-	      }
+	      // wait for the next click without using the CPU
+	      clickCount = mouseClicks.awaitClick(clickCount);
+	      // get the x and y coordinates of the position of the click
+	      double mouseX = StdDraw.mouseX(), mouseY = StdDraw.mouseY();
+	      // check if these coordinates are inside the button
+	      if (mouseX > buttonX - buttonW / 2 && mouseX < buttonX + buttonW / 2)
+	         if (mouseY > buttonY - buttonH / 2 && mouseY < buttonY + buttonH / 2)
+	            break; // break the loop to end the method and return to the main menu
 	   }
 	}
 
@@ -211,25 +146,26 @@ public class Tetris2048 {
       StdDraw.setPenColor(textColor);
       String textToDisplay = "Click Here to Start the Game";
       StdDraw.text(buttonX, buttonY, textToDisplay);
+      // display the menu once (it does not change until the button is clicked)
+      MouseClicks mouseClicks = MouseClicks.getInstance();
+      long clickCount = mouseClicks.getClickCount();
+      StdDraw.show();
       // menu interaction loop
       while (true) {
-         // display the menu and wait for a short time (50 ms)
-         StdDraw.show();
-         StdDraw.pause(50);
-         // check if the mouse is being pressed on the button
-         if (StdDraw.isMousePressed()) {
-            // get the x and y coordinates of the position of the mouse
-            double mouseX = StdDraw.mouseX(), mouseY = StdDraw.mouseY();
-            // check if these coordinates are inside the button
-            if (mouseX > buttonX - buttonW / 2 && mouseX < buttonX + buttonW / 2)
-               if (mouseY > buttonY - buttonH / 2 && mouseY < buttonY + buttonH / 2)
-                  break; // break the loop to end the method and start the game
-         }
+         // wait for the next click without using the CPU
+         clickCount = mouseClicks.awaitClick(clickCount);
+         // get the x and y coordinates of the position of the click
+         double mouseX = StdDraw.mouseX(), mouseY = StdDraw.mouseY();
+         // check if these coordinates are inside the button
+         if (mouseX > buttonX - buttonW / 2 && mouseX < buttonX + buttonW / 2)
+            if (mouseY > buttonY - buttonH / 2 && mouseY < buttonY + buttonH / 2)
+               break; // break the loop to end the method and start the game
       }
    }
    
-	// Add the displayGameOver method to the Tetris2048 class
-	public static void displayGameOver(int gridHeight, int gridWidth, GameGrid grid) {
+	// A method for displaying the game over menu that returns true when the New
+	// Game button is clicked and false when the Exit Game button is clicked
+	public static boolean displayGameOver(int gridHeight, int gridWidth, GameGrid grid) {
 	   Color buttonColor = new Color(194, 24, 27);
 	   Color textColor = new Color(255, 255, 255);
 	   String imgFile = "images/game_over_menu.png";
@@ -259,26 +195,24 @@ public class Tetris2048 {
 	   StdDraw.text(newGameButtonX, newGameButtonY, "New Game");
 	   StdDraw.text(exitGameButtonX, exitGameButtonY, "Exit Game");
 	
+	   // display the menu once and wait for the clicks without using the CPU
+	   MouseClicks mouseClicks = MouseClicks.getInstance();
+	   long clickCount = mouseClicks.getClickCount();
+	   StdDraw.show();
 	   while (true) {
-	       StdDraw.show();
-	       StdDraw.pause(50);
-	
-	       if (StdDraw.isMousePressed()) {
-	           double mouseX = StdDraw.mouseX(), mouseY = StdDraw.mouseY();
+	       clickCount = mouseClicks.awaitClick(clickCount);
+	       double mouseX = StdDraw.mouseX(), mouseY = StdDraw.mouseY();
 	
-	           // New Game button clicked
-	           if (mouseX >= newGameButtonX - newGameButtonW / 2 && mouseX <= newGameButtonX + newGameButtonW / 2) {
-	               if (mouseY >= newGameButtonY - newGameButtonH / 2 && mouseY <= newGameButtonY + newGameButtonH / 2) {
-	                  displayGameMenu(gridHeight, gridWidth);
-	                  main(null); // break the loop to end the method and start the game
-	               }
-	            }
+	       // New Game button clicked
+	       if (mouseX >= newGameButtonX - newGameButtonW / 2 && mouseX <= newGameButtonX + newGameButtonW / 2) {
+	           if (mouseY >= newGameButtonY - newGameButtonH / 2 && mouseY <= newGameButtonY + newGameButtonH / 2)
+	              return true; // end the method and start a new game
+	        }
 	
-	           // Exit Game button clicked
-	           if (mouseX > exitGameButtonX - exitGameButtonW / 2 && mouseX < exitGameButtonX + exitGameButtonW / 2
-	                   && mouseY > exitGameButtonY - exitGameButtonH / 2 && mouseY < exitGameButtonY + exitGameButtonH / 2) {
-	               System.exit(0);
-	           }
+	       // Exit Game button clicked
+	       if (mouseX > exitGameButtonX - exitGameButtonW / 2 && mouseX < exitGameButtonX + exitGameButtonW / 2
+	               && mouseY > exitGameButtonY - exitGameButtonH / 2 && mouseY < exitGameButtonY + exitGameButtonH / 2) {
+	           return false;
 	       }
 	   }
 	}
@@ -1,31 +1,81 @@
-import java.util.Random;
+import java.nio.ByteBuffer;
 
 // A class used for modeling tetrominoes with 3 out of 7 different types/shapes 
 // as (I, O and Z)
 public class Tetromino {
    private char type;
-   private Tile[][] tileMatrix; // the tiles on the tetromino shaped by its type
+   private int typeIndex; // the index of the type in TYPES
+   private int n; // n = number of rows = number of columns in the tile matrix
+   // the tiles (minos) of the tetromino, whose positions in the tile matrix are
+   // given by the precomputed tables below for each rotation
+   private Tile[] tiles = new Tile[CELL_COUNT];
+   private int rotation = 0; // the index of the current rotation (0 to 3)
    // the position of the bottom left cell in the tile matrix is stored as
    // the position of the tetromino
    private Point bottomLeftCell = new Point();
+   // the size of the game grid that the tetromino enters
+   private int gridHeight, gridWidth;
    // the minimum bounded tile matrix without any empty row or column
    private Tile[][] minBoundedTileMatrix;
    // the position (the bottom left cell) of the minimum bounded tile matrix
    private Point minBoundedTileMatrixPosition = new Point();
+   // the position reused for drawing each tile
+   private Point drawPosition = new Point();
    
   
 
    // Data fields: class variables
    // --------------------------------------------------------------------------
-   public static int gridWidth, gridHeight; // the size of the game grid
+   // the types (shapes) of the tetrominoes
+   public static final char[] TYPES = { 'I', 'O', 'Z', 'J', 'L', 'S', 'T' };
+   public static final int CELL_COUNT = 4; // tetromino -> 4 occupied tiles
+   // the size of the tile matrix for each type
+   private static final int[] SIZES = new int[TYPES.length];
+   // the column and row indexes of each tile in the tile matrix for each type
+   // and rotation ([type][rotation][tile])
+   private static final int[][][] CELL_COLS = new int[TYPES.length][4][CELL_COUNT];
+   private static final int[][][] CELL_ROWS = new int[TYPES.length][4][CELL_COUNT];
+   // the occupied cells of each row of the tile matrix as bits (from the bottom
+   // row to the top row of the tile matrix) for each type and rotation, used
+   // for the collision checks on the game grid ([type][rotation][row])
+   private static final long[][][] ROW_MASKS = new long[TYPES.length][4][];
+   // the index of the topmost non-empty row in ROW_MASKS for each type and
+   // rotation
+   private static final int[][] TOP_ROWS = new int[TYPES.length][4];
 
-   // Methods
-   // --------------------------------------------------------------------------
-   // A constructor for creating a tetromino with a given type (shape)
-   public Tetromino(char type) {
-	   this.type=type;
-      // determine the occupied (non-empty) tiles in the tile matrix
-      Point[] occupiedTiles = new Point[4]; // tetromino -> 4 occupied tiles
+   // compute all the rotations of each type once
+   static {
+      for (int t = 0; t < TYPES.length; t++) {
+         Point[] occupiedTiles = new Point[CELL_COUNT];
+         int n = getInitialShape(TYPES[t], occupiedTiles);
+         SIZES[t] = n;
+         for (int i = 0; i < CELL_COUNT; i++) {
+            CELL_COLS[t][0][i] = occupiedTiles[i].getX();
+            CELL_ROWS[t][0][i] = occupiedTiles[i].getY();
+         }
+         for (int r = 0; r < 4; r++) {
+            // the tile at (row, col) in a rotation is at (col, n - 1 - row) in
+            // the next one (as in rotating the tile matrix counterclockwise)
+            if (r > 0) {
+               for (int i = 0; i < CELL_COUNT; i++) {
+                  CELL_ROWS[t][r][i] = CELL_COLS[t][r - 1][i];
+                  CELL_COLS[t][r][i] = n - 1 - CELL_ROWS[t][r - 1][i];
+               }
+            }
+            ROW_MASKS[t][r] = new long[n];
+            for (int i = 0; i < CELL_COUNT; i++) {
+               int maskRow = n - 1 - CELL_ROWS[t][r][i];
+               ROW_MASKS[t][r][maskRow] |= 1L << CELL_COLS[t][r][i];
+               TOP_ROWS[t][r] = Math.max(TOP_ROWS[t][r], maskRow);
+            }
+         }
+      }
+   }
+
+   // A method that determines the occupied (non-empty) tiles in the tile matrix
+   // of the given type in its initial orientation and returns the size of the
+   // tile matrix
+   private static int getInitialShape(char type, Point[] occupiedTiles) {
       int n=0;
       if (type == 'I') {
          n = 4; // n = number of rows = number of columns in the tile matrix
@@ -77,63 +127,117 @@ public class Tetromino {
          occupiedTiles[2] = new Point(0, 2);
          occupiedTiles[3] = new Point(1, 2);
       }
-      // create a matrix of numbered tiles based on the shape of the tetromino
-      tileMatrix = new Tile[n][n];
-      // create the four tiles (minos) of the tetromino and place these tiles
-      // into the tile matrix
-      for (Point tilePosition : occupiedTiles) { // using a for-each loop
-         int colIndex = tilePosition.getX(), rowIndex = tilePosition.getY();
-         // create a tile at the computed position
-         tileMatrix[rowIndex][colIndex] = new Tile();
-      }
+      return n;
+   }
+
+   // A method that returns the index of the given type in TYPES
+   private static int indexOfType(char type) {
+      for (int t = 0; t < TYPES.length; t++)
+         if (TYPES[t] == type)
+            return t;
+      throw new IllegalArgumentException("Invalid tetromino type: " + type);
+   }
+
+   // Methods
+   // --------------------------------------------------------------------------
+   // A constructor for creating a copy of the given tetromino (with the same
+   // tiles, rotation and position)
+   public Tetromino(Tetromino other) {
+      type = other.type;
+      typeIndex = other.typeIndex;
+      n = other.n;
+      gridHeight = other.gridHeight;
+      gridWidth = other.gridWidth;
+      tiles = other.tiles.clone();
+      rotation = other.rotation;
+      bottomLeftCell.move(other.bottomLeftCell.getX(), other.bottomLeftCell.getY());
+   }
+
+   // A method that makes this tetromino a copy of the given tetromino (with the
+   // same tiles, rotation and position) without creating any objects (used
+   // for reusing a scratch tetromino for each placement tried by a bot)
+   public void copyFrom(Tetromino other) {
+      type = other.type;
+      typeIndex = other.typeIndex;
+      n = other.n;
+      gridHeight = other.gridHeight;
+      gridWidth = other.gridWidth;
+      System.arraycopy(other.tiles, 0, tiles, 0, CELL_COUNT);
+      rotation = other.rotation;
+      bottomLeftCell.move(other.bottomLeftCell.getX(), other.bottomLeftCell.getY());
+   }
+
+   // A constructor for creating a tetromino with a given type (shape) that
+   // enters a game grid of the given size
+   public Tetromino(char type, int gridH, int gridW) {
+      this(type, GameRandom.current(), gridH, gridW);
+   }
+
+   // A constructor for creating a tetromino with a given type (shape) that
+   // enters a game grid of the given size by using the given random number
+   // generator for its tiles and its position
+   public Tetromino(char type, GameRandom random, int gridH, int gridW) {
+      gridHeight = gridH;
+      gridWidth = gridW;
+      // create the four tiles (minos) of the tetromino
+      for (int i = 0; i < CELL_COUNT; i++)
+         tiles[i] = new Tile(random);
+      setType(type, random);
+   }
+
+   // A method that makes this tetromino a new one with the given type (shape)
+   // by using the given random number generator for its tiles and its position
+   // as the constructor above does, but without creating any objects (used
+   // for reusing a tetromino after its tiles are locked on the game grid)
+   public void reset(char type, GameRandom random) {
+      for (int i = 0; i < CELL_COUNT; i++)
+         tiles[i].setRandomNumber(random);
+      setType(type, random);
+   }
+
+   // A method for setting the type, the rotation and the position of the
+   // tetromino when it is created
+   private void setType(char type, GameRandom random) {
+      this.type = type;
+      typeIndex = indexOfType(type);
+      n = SIZES[typeIndex];
+      rotation = 0;
       // initialize the position of the tetromino (the bottom left cell in the
       // tile matrix) with a random horizontal position above the game grid
       bottomLeftCell.setY(gridHeight - 1);
-      Random random = new Random();
       bottomLeftCell.setX(random.nextInt(gridWidth - n + 1));
    }
 
-   // A method that returns the position of the cell in the tile matrix with
-   // the given row and column indexes
-   public Point getCellPosition(int row, int col) {
-      int n = tileMatrix.length; // n = number of rows = number of columns
-      Point position = new Point();
-      // horizontal position of the cell
-      position.setX(bottomLeftCell.getX() + col);
-      // vertical position of the cell
-      position.setY(bottomLeftCell.getY() + (n - 1) - row);
-      return position;
+   // Methods that return the column/row index on the game grid and the tile of
+   // the tile (mino) with the given index (0 to CELL_COUNT - 1)
+   public int getCellCol(int i) {
+      return bottomLeftCell.getX() + CELL_COLS[typeIndex][rotation][i];
    }
 
-   // A method that creates a copy of tileMatrix omitting empty rows and columns
+   public int getCellRow(int i) {
+      return bottomLeftCell.getY() + (n - 1) - CELL_ROWS[typeIndex][rotation][i];
+   }
+
+   public Tile getTile(int i) {
+      return tiles[i];
+   }
+
+   // A method that creates a copy of the tiles omitting empty rows and columns
    public void createMinBoundedTileMatrix() {
-      int n = tileMatrix.length; // n = number of rows = number of columns
+      int[] cellRows = CELL_ROWS[typeIndex][rotation];
+      int[] cellCols = CELL_COLS[typeIndex][rotation];
       // determine rows and columns to copy (omit empty rows and columns)
       int minRow = n - 1, maxRow = 0, minCol = n - 1, maxCol = 0;
-      for (int row = 0; row < n; row++) {
-         for (int col = 0; col < n; col++) {
-            if (tileMatrix[row][col] != null) {
-               if (row < minRow)
-                  minRow = row;
-               if (row > maxRow)
-                  maxRow = row;
-               if (col < minCol)
-                  minCol = col;
-               if (col > maxCol)
-                  maxCol = col;
-            }
-         }
+      for (int i = 0; i < CELL_COUNT; i++) {
+         minRow = Math.min(minRow, cellRows[i]);
+         maxRow = Math.max(maxRow, cellRows[i]);
+         minCol = Math.min(minCol, cellCols[i]);
+         maxCol = Math.max(maxCol, cellCols[i]);
       }
-      // copy the tiles from the tile matrix
+      // copy the tiles
       minBoundedTileMatrix = new Tile[maxRow - minRow + 1][maxCol - minCol + 1];
-      for (int row = minRow; row <= maxRow; row++) {
-         for (int col = minCol; col <= maxCol; col++) {
-            if (tileMatrix[row][col] != null) {
-               int rowIndex = row - minRow, colIndex = col - minCol;
-               minBoundedTileMatrix[rowIndex][colIndex] = tileMatrix[row][col];
-            }
-         }
-      }
+      for (int i = 0; i < CELL_COUNT; i++)
+         minBoundedTileMatrix[cellRows[i] - minRow][cellCols[i] - minCol] = tiles[i];
       // compute the position (bottom left cell) of the min bounded tile matrix
       int blcX = bottomLeftCell.getX(), blcY = bottomLeftCell.getY();
       minBoundedTileMatrixPosition.setX(blcX + minCol);
@@ -152,170 +256,163 @@ public class Tetromino {
 
    // A method for drawing the tetromino on the game grid
    public void draw() {
-      int n = tileMatrix.length; // n = number of rows = number of columns
-      for (int row = 0; row < n; row++) {
-         for (int col = 0; col < n; col++) {
-            // draw each occupied tile (not equal to null) on the game grid
-            if (tileMatrix[row][col] != null) {
-               // get the position of the tile
-               Point position = getCellPosition(row, col);
-               // draw only the tiles that are inside the game grid
-               if (position.getY() < gridHeight)
-                  tileMatrix[row][col].draw(position);
-            }
+      for (int i = 0; i < CELL_COUNT; i++) {
+         // draw only the tiles that are inside the game grid
+         if (getCellRow(i) < gridHeight) {
+            drawPosition.move(getCellCol(i), getCellRow(i));
+            tiles[i].draw(drawPosition);
          }
       }
    }
 
    // A method for moving the tetromino in a given direction by 1 on the game grid
-   public boolean move(String direction, GameGrid gameGrid) {
+   // (or as far as possible for HARD_DROP)
+   public boolean move(Direction direction, GameGrid gameGrid) {
       // check if the tetromino can be moved in the given direction by using
       // the canBeMoved method defined below
       if (!canBeMoved(direction, gameGrid))
          return false; // the tetromino cannot be moved in the given direction
       // move the tetromino by updating the position of its bottom left cell
-      if (direction == "left")
-         bottomLeftCell.setX(bottomLeftCell.getX() - 1);
-      else if (direction == "right")
-         bottomLeftCell.setX(bottomLeftCell.getX() + 1);
-      else // direction == "down"
-         bottomLeftCell.setY(bottomLeftCell.getY() - 1);
+      if (direction == Direction.HARD_DROP)
+         bottomLeftCell.setY(gameGrid.landingRow(getRowMasks(), n,
+               bottomLeftCell.getY(), bottomLeftCell.getX()));
+      else
+         bottomLeftCell.translate(direction.getDx(), direction.getDy());
       return true; // a successful move in the given direction
    }
-	// A method for rotating the tetromino counterclockwise
-	public void rotateCounterclockwise(GameGrid gameGrid) {
-	    int n = tileMatrix.length;
-	
-	    // Create a new matrix to store the rotated tiles
-	    Tile[][] rotatedMatrix = new Tile[n][n];
-	
-	    // Copy the tiles to the rotated matrix in a counterclockwise manner
-	    for (int row = 0; row < n; row++) {
-	        for (int col = 0; col < n; col++) {
-	            rotatedMatrix[col][n - row - 1] = tileMatrix[row][col];
-	        }
-	    }
-	
-	    // Check if the rotated position is valid
-	    if (isValidRotation(rotatedMatrix, gameGrid)) {
-	        // If the rotation is valid, update the tile matrix
-	        tileMatrix = rotatedMatrix;
-	    }
-	}
-	
-	// A method for rotating the tetromino clockwise
-	public void rotateClockwise(GameGrid gameGrid) {
-	    int n = tileMatrix.length;
-	
-	    // Create a new matrix to store the rotated tiles
-	    Tile[][] rotatedMatrix = new Tile[n][n];
-	
-	    // Copy the tiles to the rotated matrix in a clockwise manner
-	    for (int row = 0; row < n; row++) {
-	        for (int col = 0; col < n; col++) {
-	            rotatedMatrix[n - col - 1][row] = tileMatrix[row][col];
-	        }
-	    }
-	
-	    // Check if the rotated position is valid
-	    if (isValidRotation(rotatedMatrix, gameGrid)) {
-	        // If the rotation is valid, update the tile matrix
-	        tileMatrix = rotatedMatrix;
-	    }
-	}
-	
-	// A method for checking if the rotated matrix is in a valid position
-	private boolean isValidRotation(Tile[][] rotatedMatrix, GameGrid gameGrid) {
-	    int n = rotatedMatrix.length;
-	
-	    for (int row = 0; row < n; row++) {
-	        for (int col = 0; col < n; col++) {
-	            if (rotatedMatrix[row][col] != null) {
-	                Point position = getCellPosition(row, col);
-	
-	                // Check if the rotated position is within the game grid
-	                if (position.getX() < 0 || position.getX() >= gridWidth || position.getY() < 0 || position.getY() >= gridHeight) {
-	                    return false;
-	                }
-	
-	                // Check if the rotated position collides with other occupied cells
-	                if (gameGrid.isOccupied(position.getY(), position.getX())) {
-	                    return false;
-	                }
-	            }
-	        }
-	    }
-	    return true; // The rotation is valid
-}
 
-   
+   // A method for moving the tetromino in a direction given by its name
+   // ("left", "right", "down" or "hard_drop")
+   public boolean move(String direction, GameGrid gameGrid) {
+      return move(Direction.fromString(direction), gameGrid);
+   }
+
+   // A method for rotating the tetromino counterclockwise that returns whether it
+   // has been rotated or not
+   public boolean rotateCounterclockwise(GameGrid gameGrid) {
+      // the tiles of the next rotation are looked up from the precomputed
+      // tables, and the rotation is done only if it is in a valid position
+      int rotated = (rotation + 1) % 4;
+      if (!isValidRotation(rotated, gameGrid))
+         return false; // the tetromino cannot be rotated
+      rotation = rotated;
+      return true;
+   }
+
+   // A method for rotating the tetromino clockwise that returns whether it
+   // has been rotated or not
+   public boolean rotateClockwise(GameGrid gameGrid) {
+      // the tiles of the previous rotation are looked up from the precomputed
+      // tables, and the rotation is done only if it is in a valid position
+      int rotated = (rotation + 3) % 4;
+      if (!isValidRotation(rotated, gameGrid))
+         return false; // the tetromino cannot be rotated
+      rotation = rotated;
+      return true;
+   }
+
+   // A method for checking if the tetromino in the given rotation is in a valid
+   // position (inside the game grid without colliding with the locked tiles)
+   private boolean isValidRotation(int rotated, GameGrid gameGrid) {
+      // the rotated tetromino must be below the top of the game grid
+      int topRow = bottomLeftCell.getY() + TOP_ROWS[typeIndex][rotated];
+      if (topRow >= gameGrid.getGridHeight())
+         return false;
+      // and must not collide with the other boundaries or the locked tiles
+      return !gameGrid.collides(ROW_MASKS[typeIndex][rotated], n,
+            bottomLeftCell.getY(), bottomLeftCell.getX());
+   }
 
    // A method to check if the tetromino can be moved in the given direction or not
+   public boolean canBeMoved(Direction dir, GameGrid gameGrid) {
+      // the tetromino can be moved if its cells do not collide with the grid
+      // boundaries or the locked tiles after the move (the row masks of the
+      // tetromino are shifted by the move and tested against the grid)
+      return !gameGrid.collides(ROW_MASKS[typeIndex][rotation], n,
+            bottomLeftCell.getY() + dir.getDy(), bottomLeftCell.getX() + dir.getDx());
+   }
+
+   // A method to check if the tetromino can be moved in a direction given by its
+   // name ("left", "right", "down" or "hard_drop") or not
    public boolean canBeMoved(String dir, GameGrid gameGrid) {
-      int n = tileMatrix.length; // n = number of rows = number of columns
-      // check for moving left or right
-      if (dir == "left" || dir == "right") {
-         for (int row = 0; row < n; row++) {
-            for (int col = 0; col < n; col++) {
-               // direction = left --> check the leftmost tile of each row
-               if (dir == "left" && tileMatrix[row][col] != null) {
-                  Point leftmost = getCellPosition(row, col);
-                  // skip each row whose leftmost tile is out of the game grid
-                  // (possible for newly entered tetrominoes to the game grid)
-                  if (leftmost.getY() >= gridHeight)
-                     break;
-                  // the tetromino cannot go left if any leftmost tile is at x = 0
-                  if (leftmost.getX() == 0)
-                     return false;
-                  // the tetromino cannot go left if the grid cell on the left
-                  // of any leftmost tile is occupied
-                  if (gameGrid.isOccupied(leftmost.getY(), leftmost.getX() - 1))
-                     return false;
-                  break; // end the inner for loop
-               }
-               // direction = right --> check the rightmost tile of each row
-               else if (dir == "right" && tileMatrix[row][n - 1 - col] != null) {
-                  Point rightmost = getCellPosition(row, n - 1 - col);
-                  // skip each row whose rightmost tile is out of the game grid
-                  // (possible for newly entered tetrominoes to the game grid)
-                  if (rightmost.getY() >= gridHeight)
-                     break;
-                  // the tetromino cannot go right if any rightmost tile is at
-                  // x = gridWidth - 1
-                  if (rightmost.getX() == gridWidth - 1)
-                     return false;
-                  // the tetromino cannot go right if the grid cell on the right
-                  // of any rightmost tile is occupied
-                  if (gameGrid.isOccupied(rightmost.getY(), rightmost.getX() + 1))
-                     return false;
-                  break; // end the inner for loop
-               }
-            }
-         }
-      }
-      // direction = down --> check the bottommost tile of each column
-      else {
-         for (int col = 0; col < n; col++) {
-            for (int row = n - 1; row > -1; row--) {
-               if (tileMatrix[row][col] != null) {
-                  Point bottommost = getCellPosition(row, col);
-                  // skip each column whose bottommost tile is out of the grid
-                  // (possible for newly entered tetrominoes to the game grid)
-                  if (bottommost.getY() > gridHeight)
-                     break;
-                  // the tetromino cannot go down if any bottommost tile is at y = 0
-                  if (bottommost.getY() == 0)
-                     return false;
-                  // or the grid cell below any bottommost tile is occupied
-                  if (gameGrid.isOccupied(bottommost.getY() - 1, bottommost.getX()))
-                     return false;
-                  break; // end the inner for loop
-               }
-            }
-         }
+      return canBeMoved(Direction.fromString(dir), gameGrid);
+   }
+
+   // A method that returns the number of rows the tetromino would move down
+   // by a hard drop (used for showing where the tetromino will land)
+   public int getDropDistance(GameGrid gameGrid) {
+      return bottomLeftCell.getY() - gameGrid.landingRow(getRowMasks(), n,
+            bottomLeftCell.getY(), bottomLeftCell.getX());
+   }
+
+   // A getter method for the occupied cells of each row of the tile matrix in
+   // the current rotation as bits (from the bottom row to the top row)
+   public long[] getRowMasks() {
+      return ROW_MASKS[typeIndex][rotation];
+   }
+
+   // A getter method for the row masks of the tile matrix in the given rotation
+   public long[] getRowMasks(int rotation) {
+      return ROW_MASKS[typeIndex][rotation];
+   }
+
+   // A method that puts the tetromino in the given rotation with its bottom left
+   // cell in the given column (at its current row) if it does not collide with
+   // the grid boundaries or the locked tiles there, and returns whether it does
+   public boolean setPlacement(int rotation, int col, GameGrid gameGrid) {
+      if (gameGrid.collides(ROW_MASKS[typeIndex][rotation], n, bottomLeftCell.getY(), col))
+         return false;
+      this.rotation = rotation;
+      bottomLeftCell.setX(col);
+      return true;
+   }
+
+   // A method for writing the type, the numbers on the tiles, the rotation and
+   // the position of the tetromino to the given buffer (for saving the game)
+   public void writeTo(ByteBuffer out) {
+      out.put((byte) type);
+      for (int i = 0; i < CELL_COUNT; i++)
+         out.put((byte) tiles[i].getExponent());
+      out.put((byte) rotation);
+      out.putShort((short) bottomLeftCell.getX());
+      out.putShort((short) bottomLeftCell.getY());
+   }
+
+   // A method that creates a tetromino on a game grid of the given size from
+   // the values written by writeTo to the given buffer
+   public static Tetromino readFrom(ByteBuffer in, int gridH, int gridW) {
+      Tetromino tetromino = new Tetromino((char) in.get(), GameRandom.current(), gridH,
+            gridW);
+      for (int i = 0; i < CELL_COUNT; i++) {
+         int exponent = in.get();
+         if (exponent < 1 || exponent > Tile.MAX_EXPONENT)
+            throw new IllegalArgumentException("Invalid tile exponent: " + exponent);
+         tetromino.tiles[i].setNumber(Tile.valueOf(exponent));
       }
-      return true; // the tetromino can be moved in the given direction
+      int rotation = in.get();
+      if (rotation < 0 || rotation > 3)
+         throw new IllegalArgumentException("Invalid rotation: " + rotation);
+      tetromino.rotation = rotation;
+      int col = in.getShort(), row = in.getShort();
+      tetromino.bottomLeftCell.move(col, row);
+      return tetromino;
    }
+
+   // A getter method for the size of the tile matrix
+   public int getSize() {
+      return n;
+   }
+
+   // A getter method for the index of the current rotation (0 to 3)
+   public int getRotation() {
+      return rotation;
+   }
+
+   // A getter method for the position of the bottom left cell of the tetromino
+   public Point getBottomLeftCell() {
+      return bottomLeftCell;
+   }
+
    public char getType() {
 	      return type;
 	   }
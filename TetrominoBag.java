@@ -0,0 +1,60 @@
+import java.nio.ByteBuffer;
+
+// A class used for modeling a 7-bag generator of the types of the tetrominoes:
+// all the seven types are put in a bag in a random order and taken out one by
+// one, and the bag is filled again when it is empty. So each type comes once in
+// every seven tetrominoes, and the same type cannot be missing for long.
+public class TetrominoBag {
+   // data fields
+   private GameRandom random; // used for shuffling the bag
+   // the indexes of the types (in Tetromino.TYPES) in the order they are taken
+   private int[] order = new int[Tetromino.TYPES.length];
+   private int nextIndex; // the index of the next type to take in order
+
+   // A constructor for creating a bag shuffled by the given generator
+   public TetrominoBag(GameRandom random) {
+      this.random = random;
+      nextIndex = order.length; // the bag is filled when the first type is taken
+   }
+
+   // A method that empties the bag for a new game (it is filled again when the
+   // next type is taken)
+   public void reset() {
+      nextIndex = order.length;
+   }
+
+   // A method that takes the next type out of the bag and returns its index in
+   // Tetromino.TYPES
+   public int nextTypeIndex() {
+      if (nextIndex == order.length) {
+         // fill the bag with all the types in a random order (Fisher-Yates)
+         for (int i = 0; i < order.length; i++)
+            order[i] = i;
+         for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int type = order[i];
+            order[i] = order[j];
+            order[j] = type;
+         }
+         nextIndex = 0;
+      }
+      return order[nextIndex++];
+   }
+
+   // A method for writing the order of the types and the index of the next
+   // type to the given buffer (for saving the game)
+   public void writeTo(ByteBuffer out) {
+      for (int type : order)
+         out.put((byte) type);
+      out.put((byte) nextIndex);
+   }
+
+   // A method for reading the values written by writeTo from the given buffer
+   public void readFrom(ByteBuffer in) {
+      for (int i = 0; i < order.length; i++)
+         order[i] = in.get();
+      nextIndex = in.get();
+      if (nextIndex < 0 || nextIndex > order.length)
+         throw new IllegalArgumentException("Invalid bag index: " + nextIndex);
+   }
+}
@@ -1,16 +1,13 @@
 import java.awt.Color; // the color type used in StdDraw
 import java.awt.Font; // the font type used in StdDraw
-import java.util.Random;
 
 // A class used for modeling numbered tiles as in 2048
 public class Tile {
    // Data fields: instance variables
    // --------------------------------------------------------------------------
-   private int number; // the number on the tile
-   private Color backgroundColor; // background (tile) color
-   private Color foregroundColor; // foreground (number) color
-   private Color boxColor; // box (boundary) color
-   
+   // the exponent of the number on the tile (number = 2^exponent), which is
+   // stored instead of the number so that the number can not overflow
+   private int exponent;
 
    // Data fields: class variables
    // --------------------------------------------------------------------------
@@ -18,98 +15,96 @@ public class Tile {
    private static double boundaryThickness = 0.004;
    // the font used for displaying the tile number
    private static Font font = new Font("Arial", Font.PLAIN, 14);
+   // the largest exponent that a tile can have (tiles with this exponent do not
+   // merge anymore, so that both the numbers and the score fit in a long)
+   public static final int MAX_EXPONENT = 62;
+   // the tiles shared for drawing the tiles stored only as exponents (created
+   // on demand by the forExponent method)
+   private static Tile[] sharedTiles = new Tile[MAX_EXPONENT + 1];
+   // the colors of the tiles indexed by the exponent of their numbers, built
+   // once so that drawing a tile does not create any colors
+   private static Color[] backgroundColors = new Color[MAX_EXPONENT + 1];
+   private static Color[] foregroundColors = new Color[MAX_EXPONENT + 1];
+   // box (boundary) color used for all tiles
+   private static Color boxColor = new Color(0, 100, 200);
+   // the numbers on the tiles as text indexed by the exponent of the numbers,
+   // built once so that drawing a tile does not create any strings
+   private static String[] labels = new String[MAX_EXPONENT + 1];
+
+   // build the color palette and the labels of the tiles
+   static {
+      // the background colors of the tiles from 2 (2^1) to 2048 (2^11)
+      int[][] backgrounds = { { 238, 228, 218 }, { 238, 225, 201 },
+            { 243, 178, 122 }, { 246, 150, 100 }, { 247, 124, 95 },
+            { 246, 94, 59 }, { 237, 207, 114 }, { 237, 204, 97 },
+            { 237, 200, 80 }, { 237, 197, 63 }, { 237, 194, 46 } };
+      Color darkForeground = new Color(0, 100, 200); // for 2 and 4
+      Color lightForeground = new Color(248, 240, 232); // for the others
+      for (int exponent = 1; exponent <= MAX_EXPONENT; exponent++) {
+         if (exponent <= backgrounds.length) {
+            int[] rgb = backgrounds[exponent - 1];
+            backgroundColors[exponent] = new Color(rgb[0], rgb[1], rgb[2]);
+         } else {
+            // the numbers above 2048 get darker (from the 2048 color to a dark
+            // gray) as the number increases
+            double t = (double) (exponent - backgrounds.length)
+                  / (MAX_EXPONENT - backgrounds.length);
+            int[] from = backgrounds[backgrounds.length - 1], to = { 60, 58, 50 };
+            backgroundColors[exponent] = new Color(
+                  (int) Math.round(from[0] + t * (to[0] - from[0])),
+                  (int) Math.round(from[1] + t * (to[1] - from[1])),
+                  (int) Math.round(from[2] + t * (to[2] - from[2])));
+         }
+         foregroundColors[exponent] = exponent <= 2 ? darkForeground : lightForeground;
+         labels[exponent] = String.valueOf(valueOf(exponent));
+      }
+   }
 
    // Methods
    // --------------------------------------------------------------------------
    // the default constructor that creates a tile with 2 as the number on it
    public Tile() {
-	   int[] randomNum = { 2, 4 }; // Tile now assigns 2 or 4 numbers randomly
-		this.number = randomNum[new Random().nextInt(randomNum.length)]; // set the colors of the tile
-    
+      this(GameRandom.current());
+   }
+
+   // a constructor that creates a tile with 2 or 4 as the number on it by using
+   // the given random number generator (for playing the same game again)
+   public Tile(GameRandom random) {
+      setRandomNumber(random);
+   }
+
+   // a method that puts 2 or 4 randomly as the number on the tile by using the
+   // given random number generator (also used for reusing the tile)
+   public void setRandomNumber(GameRandom random) {
+      exponent = 1 + random.nextInt(2); // 2^1 = 2 or 2^2 = 4
    }
-   // we can add number's color
-   public void setColorWithNumbers() {
-	   
-	   if(number == 2) {
-		   backgroundColor = new Color(238, 228, 218);
-		   foregroundColor = new Color(0, 100, 200);
-		   boxColor = new Color(0, 100, 200);   
-	   }
-	   else if(number == 4) {
-		   backgroundColor = new Color(238, 225, 201);
-		   foregroundColor = new Color(0, 100, 200);
-		   boxColor = new Color(0, 100, 200);  
-		   
-	   }
-	   else if(number == 8) {
-		   backgroundColor = new Color(243, 178, 122);
-		   foregroundColor = new Color(248, 240, 232);
-		   boxColor = new Color(0, 100, 200);  
-		   
-	   }
-	   else if(number == 16) {
-		   backgroundColor = new Color(246, 150, 100);
-		   foregroundColor = new Color(248, 240, 232);
-		   boxColor = new Color(0, 100, 200);  
-		   
-	   }
-	   else if(number == 32) {
-		   backgroundColor = new Color(247, 124, 95);
-		   foregroundColor = new Color(248, 240, 232);
-		   boxColor = new Color(0, 100, 200);  
-		   
-	   }
-	   else if(number == 64) {
-		   backgroundColor = new Color(246, 94, 59);
-		   foregroundColor = new Color(248, 240, 232);
-		   boxColor = new Color(0, 100, 200);  
-		   
-	   }
-	   else if(number == 128) {
-		   backgroundColor = new Color(237, 207, 114);
-		   foregroundColor = new Color(248, 240, 232);
-		   boxColor = new Color(0, 100, 200);  
-		   
-	   }
-	   else if(number == 256) {
-		   backgroundColor = new Color(237, 204, 97);
-		   foregroundColor = new Color(248, 240, 232);
-		   boxColor = new Color(0, 100, 200);  
-		   
-	   }
-	   else if(number == 512) {
-		   backgroundColor = new Color(237, 200, 80);
-		   foregroundColor = new Color(248, 240, 232);
-		   boxColor = new Color(0, 100, 200);  
-		   
-	   }
-	   else if(number == 1024) {
-		   backgroundColor = new Color(237, 197, 63);
-		   foregroundColor = new Color(248, 240, 232);
-		   boxColor = new Color(0, 100, 200);  
-		   
-	   }
-	   else if(number == 2048) {
-		   backgroundColor = new Color(237, 194, 46);
-		   foregroundColor = new Color(248, 240, 232);
-		   boxColor = new Color(0, 100, 200);  
-		   
-	   }
-	   
-	   
+
+   // a method that returns a tile with the given exponent (number = 2^exponent)
+   // for drawing the tiles that are stored only as exponents (the same tile is
+   // returned for the same exponent, so it must not be modified)
+   public static Tile forExponent(int exponent) {
+      if (sharedTiles[exponent] == null) {
+         Tile tile = new Tile();
+         tile.exponent = exponent;
+         sharedTiles[exponent] = tile;
+      }
+      return sharedTiles[exponent];
+   }
+
+   // a method that returns the number for the given exponent (2^exponent)
+   public static long valueOf(int exponent) {
+      return exponent == 0 ? 0 : 1L << exponent;
    }
 
-   // a method for drawing the tile
-   public void draw(Point position, double... sideLength) {
-      setColorWithNumbers();
-      // the default value for the side length (sLength) is 1
-      double sLength;
-      if (sideLength.length == 0) // sideLength is a variable-length parameter
-         sLength = 1;
-      else
-         sLength = sideLength[0];
+   // a method for drawing the tile (the default value for the side length is 1)
+   public void draw(Point position) {
+      draw(position, 1);
+   }
+
+   // a method for drawing the tile with the given side length
+   public void draw(Point position, double sLength) {
       // draw the tile as a filled square
-      StdDraw.setPenColor(backgroundColor);
+      StdDraw.setPenColor(backgroundColors[exponent]);
       StdDraw.filledSquare(position.getX(), position.getY(), sLength / 2);
       // draw the bounding box around the tile as a square
       StdDraw.setPenColor(boxColor);
@@ -117,18 +112,22 @@ public class Tile {
       StdDraw.square(position.getX(), position.getY(), sLength / 2);
       StdDraw.setPenRadius(); // reset the pen radius to its default value
       // draw the number on the tile
-      StdDraw.setPenColor(foregroundColor);
+      StdDraw.setPenColor(foregroundColors[exponent]);
       StdDraw.setFont(font);
-      StdDraw.text(position.getX(), position.getY(), "" + number);
+      StdDraw.text(position.getX(), position.getY(), labels[exponent]);
    }
-	public int getNumber() {
-		return number;
+	public long getNumber() {
+		return valueOf(exponent);
+	}
+	public void setNumber(long number) {
+		this.exponent = Long.numberOfTrailingZeros(number);
 	}
-	public void setNumber(int number) {
-		this.number = number;
+	public int getExponent() {
+		return exponent;
 	}
     // Method to double the number property
     public void doubleNumber() {
-        this.number *= 2;
+        if (exponent < MAX_EXPONENT)
+            this.exponent++;
     }
 }
\ No newline at end of file